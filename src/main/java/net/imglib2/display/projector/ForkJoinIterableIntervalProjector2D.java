@@ -0,0 +1,218 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+
+/**
+ * Multithreaded version of {@link IterableIntervalProjector2D}, that uses a
+ * {@link ForkJoinPool}.
+ * <p>
+ * Other than {@link MultithreadedIterableIntervalProjector2D}, the target is
+ * not divided into a fixed number of portions. Instead, the rows of the
+ * target are recursively split into blocks, until a block has no more than
+ * {@code minPixelsPerTask} pixels. Idle threads steal blocks from busy
+ * threads, which balances the load if the cost per pixel is uneven. Targets
+ * smaller than {@code minPixelsPerTask} are filled sequentially, as are all
+ * targets if the pool is null.
+ * <p>
+ * The target must be a {@link RandomAccessibleInterval} with
+ * {@link FlatIterationOrder}, like an {@link net.imglib2.img.array.ArrayImg}.
+ * Other targets are filled sequentially.
+ *
+ * @param <A>
+ *            pixel type of the input
+ * @param <B>
+ *            pixel type of the output
+ */
+public class ForkJoinIterableIntervalProjector2D< A, B > extends IterableIntervalProjector2D< A, B > implements CancellableProjector
+{
+
+	/**
+	 * Default minimal number of pixels per task.
+	 */
+	public static final int DEFAULT_MIN_PIXELS_PER_TASK = 16 * 1024;
+
+	private final ForkJoinPool pool;
+
+	private final int dimX;
+
+	private final int dimY;
+
+	private final long minPixelsPerTask;
+
+	private volatile boolean cancelled = false;
+
+	public ForkJoinIterableIntervalProjector2D( int dimX, int dimY, RandomAccessible< A > source,
+			IterableInterval< B > target, Converter< ? super A, B > converter, ForkJoinPool pool, long minPixelsPerTask )
+	{
+		super( dimX, dimY, source, target, converter );
+		this.pool = pool;
+		this.dimX = dimX;
+		this.dimY = dimY;
+		this.minPixelsPerTask = Math.max( 1, minPixelsPerTask );
+	}
+
+	public ForkJoinIterableIntervalProjector2D( int dimX, int dimY, RandomAccessible< A > source,
+			IterableInterval< B > target, Converter< ? super A, B > converter, ForkJoinPool pool )
+	{
+		this( dimX, dimY, source, target, converter, pool, DEFAULT_MIN_PIXELS_PER_TASK );
+	}
+
+	@Override
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	@Override
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Maps the source to the target. Small targets, or all targets if no
+	 * {@link ForkJoinPool} was given, are mapped sequentially, but can still
+	 * be cancelled. Unsupported targets are mapped sequentially, and can't be
+	 * cancelled.
+	 */
+	@Override
+	public void map()
+	{
+		if ( !( target instanceof RandomAccessibleInterval ) ||
+				!( target.iterationOrder() instanceof FlatIterationOrder ) )
+		{
+			super.map();
+			return;
+		}
+
+		// fix interval for all dimensions
+		for ( int d = 0; d < position.length; ++d )
+			min[ d ] = max[ d ] = position[ d ];
+
+		@SuppressWarnings( "unchecked" )
+		final RandomAccessibleInterval< B > targetInterval = ( RandomAccessibleInterval< B > ) target;
+		final RowBlock block = new RowBlock( targetInterval, target.min( 1 ), target.max( 1 ) + 1 );
+		if ( pool == null || target.size() <= minPixelsPerTask )
+			block.mapRows();
+		// NB: Called from within the pool, the blocks are forked to the current worker.
+		else if ( ForkJoinTask.getPool() == pool )
+			block.invoke();
+		else
+			pool.invoke( block );
+	}
+
+	/**
+	 * Fills the rows {@code [startY, endY)} of the target.
+	 */
+	private class RowBlock extends RecursiveAction
+	{
+
+		private final RandomAccessibleInterval< B > targetInterval;
+
+		private final long startY;
+
+		private final long endY;
+
+		private RowBlock( final RandomAccessibleInterval< B > targetInterval, final long startY, final long endY )
+		{
+			this.targetInterval = targetInterval;
+			this.startY = startY;
+			this.endY = endY;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( cancelled )
+				return;
+			final long width = targetInterval.dimension( 0 );
+			final long rows = endY - startY;
+			if ( rows < 2 || rows * width <= minPixelsPerTask )
+			{
+				mapRows();
+				return;
+			}
+			final long splitY = startY + rows / 2;
+			invokeAll( new RowBlock( targetInterval, startY, splitY ), new RowBlock( targetInterval, splitY, endY ) );
+		}
+
+		private void mapRows()
+		{
+			final long minX = targetInterval.min( 0 );
+			final long maxX = targetInterval.max( 0 );
+			final long width = maxX - minX + 1;
+
+			final long[] blockMin = min.clone();
+			final long[] blockMax = max.clone();
+			blockMin[ dimX ] = minX;
+			blockMax[ dimX ] = maxX;
+			blockMin[ dimY ] = startY;
+			blockMax[ dimY ] = endY - 1;
+
+			final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( blockMin, blockMax ) );
+			sourceRandomAccess.setPosition( blockMin );
+			final RandomAccess< B > targetRandomAccess = targetInterval.randomAccess();
+			targetRandomAccess.setPosition( minX, 0 );
+			targetRandomAccess.setPosition( startY, 1 );
+
+			for ( long y = startY; y < endY; ++y )
+			{
+				if ( cancelled )
+					return;
+				for ( long x = 0; x < width; ++x )
+				{
+					converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
+					sourceRandomAccess.fwd( dimX );
+					targetRandomAccess.fwd( 0 );
+				}
+				sourceRandomAccess.move( -width, dimX );
+				sourceRandomAccess.fwd( dimY );
+				targetRandomAccess.move( -width, 0 );
+				targetRandomAccess.fwd( 1 );
+			}
+		}
+	}
+}
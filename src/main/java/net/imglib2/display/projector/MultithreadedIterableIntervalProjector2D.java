@@ -36,7 +36,7 @@ import net.imglib2.view.Views;
  * @param <B>
  *            pixel type of the output
  */
-public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableIntervalProjector2D< A, B >
+public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableIntervalProjector2D< A, B > implements CancellableProjector
 {
 
 	final ExecutorService service;
@@ -47,6 +47,8 @@ public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableInte
 
 	private final int nTasks;
 
+	private volatile boolean cancelled = false;
+
 	public MultithreadedIterableIntervalProjector2D(int dimX, int dimY, RandomAccessible< A > source,
 			IterableInterval< B > target, Converter< ? super A, B > converter, ExecutorService service, int nTasks)
 	{
@@ -64,6 +66,18 @@ public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableInte
 		this( dimX, dimY, source, target, converter, service, Runtime.getRuntime().availableProcessors() );
 	}
 
+	@Override
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	@Override
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
 	@Override
 	public void map()
 	{
@@ -93,6 +107,11 @@ public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableInte
 				{
 					int i = ai.getAndIncrement();
 
+					// check for cancellation once per row, at the start of
+					// each row of the target
+					final long rowLength = target.dimension( 0 );
+					final long offset = i * portionSize;
+
 					final Cursor< B > targetCursor = target.localizingCursor();
 
 					// we might need either a cursor or a RandomAccess
@@ -114,6 +133,8 @@ public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableInte
 						while ( ( i != nTasks - 1 && stepsTaken < portionSize )
 								|| ( i == nTasks - 1 && targetCursor.hasNext() ) )
 						{
+							if ( ( offset + stepsTaken ) % rowLength == 0 && cancelled )
+								break;
 							stepsTaken++;
 							converter.convert( sourceCursor.next(), targetCursor.next() );
 						}
@@ -139,6 +160,8 @@ public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableInte
 
 						for ( long y = initY; y <= endY; ++y )
 						{
+							if ( cancelled && ( y != initY || initX == 0 ) )
+								break;
 							for ( long x = ( y == initY ? initX : 0 ); x < ( y == endY ? endX : width ); ++x )
 							{
 								targetCursor.fwd();
@@ -158,6 +181,8 @@ public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableInte
 						while ( ( i != nTasks - 1 && stepsTaken < portionSize )
 								|| ( i == nTasks - 1 && targetCursor.hasNext() ) )
 						{
+							if ( ( offset + stepsTaken ) % rowLength == 0 && cancelled )
+								break;
 							stepsTaken++;
 
 							final B b = targetCursor.next();
@@ -179,7 +204,13 @@ public class MultithreadedIterableIntervalProjector2D<A, B> extends IterableInte
 			for ( Future< Void > f : futures )
 				f.get();
 		}
-		catch ( InterruptedException | ExecutionException e )
+		catch ( InterruptedException e )
+		{
+			// NB: Let the running tasks stop at the next row.
+			cancel();
+			Thread.currentThread().interrupt();
+		}
+		catch ( ExecutionException e )
 		{
 			e.printStackTrace();
 		}
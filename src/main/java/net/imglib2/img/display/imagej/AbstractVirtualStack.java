@@ -36,6 +36,10 @@ package net.imglib2.img.display.imagej;
 
 import java.awt.Rectangle;
 import java.awt.image.ColorModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 import java.util.stream.IntStream;
 
@@ -76,8 +80,14 @@ public abstract class AbstractVirtualStack extends VirtualStack
 
 	private Rectangle roi;
 
+	private boolean roiRendering = false;
+
 	private double min = 0.0, max = 1.0;
 
+	private ExecutorService voxelsExecutorService = null;
+
+	private volatile RenderMetrics renderMetrics = null;
+
 	public AbstractVirtualStack( final int width, final int height, final int size, final int bitDepth )
 	{
 		super( 10, 10, null, "" );
@@ -109,11 +119,32 @@ public abstract class AbstractVirtualStack extends VirtualStack
 			setPixelsZeroBasedIndex( toZeroBasedIndex( n ), pixels );
 	}
 
-	private int toZeroBasedIndex( int n )
+	/**
+	 * Hands a pixel array, that was returned by {@link #getPixels(int)}, back
+	 * to the stack. The stack may reuse the array for planes requested later.
+	 * <p>
+	 * Ownership: An array returned by {@link #getPixels(int)} belongs to the
+	 * caller. Callers that keep a reference to an array must not release it.
+	 * After releasing, the caller must neither read nor write the array. The
+	 * default implementation ignores the array.
+	 */
+	public void releasePixels( final Object pixels )
+	{
+		// ignore
+	}
+
+	/** Converts the one based index of a slice to the zero based index of the plane. */
+	protected final int toZeroBasedIndex( int n )
 	{
 		return ( n - 1 ) + offset;
 	}
 
+	/** Converts the zero based index of a plane to the one based index of the slice. */
+	protected final int toOneBasedIndex( int index )
+	{
+		return index - offset + 1;
+	}
+
 	/** If this method return's false the methods {@link #setPixels} and {@link #setVoxels} will have no effect. */
 	protected boolean isWritable() {
 		return true;
@@ -156,17 +187,123 @@ public abstract class AbstractVirtualStack extends VirtualStack
 		return ImageProcessorUtils.createImg( pixels, getWidth(), getHeight() );
 	}
 
+	/**
+	 * This method is called by {@link #setVoxels} after pixels of the
+	 * specified XY-plane have been modified, through the
+	 * {@link RandomAccessibleInterval} returned by
+	 * {@link #getSliceZeroBasedIndex(int)}.
+	 *
+	 * @param index Zero based index of the plane. (Warning {@link VirtualStack#getPixels(int)} uses one base indices).
+	 */
+	protected void planeChangedZeroBasedIndex( int index )
+	{
+		// ignore
+	}
+
+	/**
+	 * This method is used internally by {@link AbstractVirtualStack} to implement {@link #getProcessor},
+	 * if ROI rendering is enabled.
+	 * <p>
+	 * Returns an array that contains the pixels of the specified XY-plane. Only the pixels inside
+	 * the given rectangle need to be set, the remaining pixels may be zero. The default
+	 * implementation returns the entire plane.
+	 *
+	 * @param index Zero based index of the plane. (Warning {@link VirtualStack#getPixels(int)} uses one base indices).
+	 * @param roi   Rectangle, that lies within the plane.
+	 * @see #setRoiRendering(boolean)
+	 */
+	protected Object getPixelsZeroBasedIndex( int index, Rectangle roi )
+	{
+		return getPixelsZeroBasedIndex( index );
+	}
+
+	/**
+	 * This method is used internally by {@link AbstractVirtualStack} to implement {@link #getProcessor}.
+	 * <p>
+	 * Returns an array that contains the pixels of the specified XY-plane. Subclasses may return
+	 * a preview of the plane, for example while the exact pixels are computed in the background.
+	 * The default implementation returns {@link #getPixelsZeroBasedIndex(int)}.
+	 *
+	 * @param index Zero based index of the plane. (Warning {@link VirtualStack#getPixels(int)} uses one base indices).
+	 */
+	protected Object getProcessorPixelsZeroBasedIndex( int index )
+	{
+		return getPixelsZeroBasedIndex( index );
+	}
+
+	/**
+	 * Enable or disable ROI rendering.
+	 * <p>
+	 * If enabled, {@link #getProcessor(int)} only renders the pixels inside
+	 * the rectangle set by {@link #setRoi(Rectangle)}, and sets the same
+	 * rectangle as ROI of the returned {@link ImageProcessor}. Pixels outside
+	 * the ROI might not be rendered, and are zero in this case. This is meant
+	 * for consumers that only look at the ROI, like measurements or
+	 * Z-profiles. {@link #getPixels} always returns the entire plane.
+	 */
+	public void setRoiRendering( final boolean roiRendering )
+	{
+		this.roiRendering = roiRendering;
+	}
+
+	/** True if ROI rendering is enabled. */
+	public boolean isRoiRendering()
+	{
+		return roiRendering;
+	}
+
+	/**
+	 * Enables the collection of render metrics, like render latencies and
+	 * cache hits, into the given {@link RenderMetrics}. Pass null to disable
+	 * the collection, which is the default.
+	 */
+	public void setRenderMetrics( final RenderMetrics metrics )
+	{
+		if ( metrics != null )
+			metrics.setQueueDepthSupplier( this::getQueueDepth );
+		this.renderMetrics = metrics;
+	}
+
+	/**
+	 * Returns the {@link RenderMetrics} set by
+	 * {@link #setRenderMetrics(RenderMetrics)}, or null if no metrics are
+	 * collected.
+	 */
+	public RenderMetrics getRenderMetrics()
+	{
+		return renderMetrics;
+	}
+
 	@Override
 	public ImageProcessor getProcessor( final int n )
 	{
 
-		final Object pixels = getPixels( n );
+		final Rectangle renderedRoi = getRenderedRoi();
+		final int index = toZeroBasedIndex( n );
+		final Object pixels = renderedRoi == null ? getProcessorPixelsZeroBasedIndex( index ) : getPixelsZeroBasedIndex( index, renderedRoi );
 		final ImageProcessor processor = ImageProcessorUtils.createImageProcessor( pixels, width, height, colorModel );
 		if ( min != Double.MAX_VALUE && !( processor instanceof ColorProcessor ) )
 			processor.setMinAndMax( min, max );
+		if ( renderedRoi != null )
+			processor.setRoi( renderedRoi );
 		return processor;
 	}
 
+	/**
+	 * Returns the part of the ROI that lies within the plane, or null if the
+	 * entire plane needs to be rendered.
+	 */
+	private Rectangle getRenderedRoi()
+	{
+		final Rectangle roi = this.roi;
+		if ( !roiRendering || roi == null )
+			return null;
+		final Rectangle clipped = roi.intersection( new Rectangle( 0, 0, width, height ) );
+		if ( clipped.isEmpty() || clipped.width == width && clipped.height == height )
+			return null;
+		return clipped;
+	}
+
 	@Override
 	public void addSlice( final String name )
 	{
@@ -215,12 +352,29 @@ public abstract class AbstractVirtualStack extends VirtualStack
 	}
 
 	/**
-	 * Currently not implemented
+	 * Writes pending changes of the specified plane to the underlying image.
+	 *
+	 * @return n if successful, -1 if not supported.
+	 * @see #saveChangesZeroBasedIndex(int)
 	 */
 	@Override
 	public int saveChanges( final int n )
 	{
-		return -1;
+		return saveChangesZeroBasedIndex( toZeroBasedIndex( n ) ) ? n : -1;
+	}
+
+	/**
+	 * This method is used internally by {@link AbstractVirtualStack} to implement {@link #saveChanges}.
+	 * <p>
+	 * Writes pending changes of the specified XY-plane to the underlying image.
+	 * Implementations that buffer the pixels given to {@link #setPixels} should override this method.
+	 *
+	 * @param index Zero based index of the plane. (Warning {@link VirtualStack#getPixels(int)} uses one base indices).
+	 * @return false if saving changes is not supported.
+	 */
+	protected boolean saveChangesZeroBasedIndex( int index )
+	{
+		return false;
 	}
 
 	@Override
@@ -428,11 +582,84 @@ public abstract class AbstractVirtualStack extends VirtualStack
 		checkBounds( x0, y0, z0, w, h, d );
 		if( ! setVoxel )
 			voxels = checkResultArray( w, h, d, voxels );
-		BiConsumer< Object, FloatType > action = ( BiConsumer< Object, FloatType > ) voxelAccessAction( optionalChannel, setVoxel );
-		loopOverVoxels( x0, y0, z0, w, h, d, voxels, action );
+		final ExecutorService service = getVoxelsExecutorService();
+		if ( service == null || d < 2 || NestedTasks.isNested() )
+		{
+			for ( int z = 0; z < d; z++ )
+				accessPlaneVoxels( z0 + offset + z, x0, y0, w, h, voxels, z * w * h, optionalChannel, setVoxel );
+		}
+		else
+		{
+			// NB: Each task accesses one plane, and a disjoint region of the voxels array.
+			final float[] finalVoxels = voxels;
+			final List< Callable< Void > > tasks = new ArrayList<>( d );
+			for ( int z = 0; z < d; z++ )
+			{
+				final int index = z0 + offset + z;
+				final int voxelsOffset = z * w * h;
+				tasks.add( () -> {
+					accessPlaneVoxels( index, x0, y0, w, h, finalVoxels, voxelsOffset, optionalChannel, setVoxel );
+					return null;
+				} );
+			}
+			NestedTasks.invokeAll( service, tasks );
+		}
+		if ( setVoxel )
+			for ( int z = z0 + offset; z < z0 + offset + d; z++ )
+				planeChangedZeroBasedIndex( z );
 		return voxels;
 	}
 
+	/**
+	 * Sets the {@link ExecutorService} that is used by {@link #getVoxels} and
+	 * {@link #setVoxels} to process the planes of a sub-volume in parallel.
+	 * The planes are processed sequentially if no {@link ExecutorService} is
+	 * set.
+	 *
+	 * @see #getVoxelsExecutorService()
+	 */
+	public void setVoxelsExecutorService( final ExecutorService service )
+	{
+		this.voxelsExecutorService = service;
+	}
+
+	/**
+	 * Returns the {@link ExecutorService} that is used by {@link #getVoxels}
+	 * and {@link #setVoxels}, or null for sequential processing. This is the
+	 * {@link ExecutorService} set by {@link #setVoxelsExecutorService}, or the
+	 * one returned by {@link #getExecutorService()} if none was set.
+	 */
+	protected ExecutorService getVoxelsExecutorService()
+	{
+		return voxelsExecutorService != null ? voxelsExecutorService : getExecutorService();
+	}
+
+	/**
+	 * Returns the {@link ExecutorService} that is used to process multiple
+	 * planes in parallel, for example by {@link #duplicate()} and
+	 * {@link #crop}. Returns null by default, which means sequential
+	 * processing.
+	 */
+	protected ExecutorService getExecutorService()
+	{
+		return null;
+	}
+
+	/**
+	 * Returns the number of tasks waiting in the queues of the
+	 * {@link ExecutorService}s used by this stack, see
+	 * {@link RenderMetrics#getQueueDepth()}.
+	 */
+	protected int getQueueDepth()
+	{
+		final ExecutorService service = getExecutorService();
+		final ExecutorService voxelsService = getVoxelsExecutorService();
+		int depth = RenderMetrics.queueDepth( service );
+		if ( voxelsService != service )
+			depth += RenderMetrics.queueDepth( voxelsService );
+		return depth;
+	}
+
 	private void checkBounds( int x0, int y0, int z0, int w, int h, int d )
 	{
 		boolean inBounds = (x0 >= 0) && (x0 + w <= width) && (y0 >= 0) && (y0 + h <= height) && (z0 >= 0) && (z0 + d <= size);
@@ -447,19 +674,41 @@ public abstract class AbstractVirtualStack extends VirtualStack
 		return voxels;
 	}
 
-	private void loopOverVoxels( int x0, int y0, int z0, int w, int h, int d, float[] voxels, BiConsumer< Object, FloatType > action )
+	private void accessPlaneVoxels( int index, int x0, int y0, int w, int h, float[] voxels, int voxelsOffset, Integer channel, boolean setVoxel )
 	{
-		FinalInterval interval = Intervals.createMinSize( x0, y0, w, h );
-		Cursor< FloatType > output = ArrayImgs.floats( voxels, w, h, d ).cursor();
-		for ( int z = z0 + offset; z < z0 + offset + d; z++ )
+		final RandomAccessibleInterval< ? > slice = getSliceZeroBasedIndex( index );
+		final Object pixels = getPixelArray( slice );
+		if ( pixels != null )
 		{
-			Cursor< ? > cursor = Views.flatIterable( Views.interval( getSliceZeroBasedIndex( z ), interval ) ).cursor();
-			while ( cursor.hasNext() ) {
-				action.accept( cursor.next(), output.next() );
-			}
+			// fast path: access the primitive array directly
+			if ( setVoxel )
+				VoxelAccess.setVoxels( pixels, width, x0, y0, w, h, voxels, voxelsOffset, channel );
+			else
+				VoxelAccess.getVoxels( pixels, width, x0, y0, w, h, voxels, voxelsOffset, channel );
+			return;
+		}
+		BiConsumer< Object, FloatType > action = ( BiConsumer< Object, FloatType > ) voxelAccessAction( channel, setVoxel );
+		FinalInterval interval = Intervals.createMinSize( x0, y0, w, h );
+		Cursor< FloatType > output = ArrayImgs.floats( voxels, voxels.length ).cursor();
+		output.jumpFwd( voxelsOffset );
+		Cursor< ? > cursor = Views.flatIterable( Views.interval( slice, interval ) ).cursor();
+		while ( cursor.hasNext() ) {
+			action.accept( cursor.next(), output.next() );
 		}
 	}
 
+	/**
+	 * Returns the primitive array that stores the pixels of the given slice,
+	 * or null if the slice isn't backed by an array of the ImageJ pixel type.
+	 */
+	private Object getPixelArray( final RandomAccessibleInterval< ? > slice )
+	{
+		final ContiguousPlanes planes = ContiguousPlanes.of( slice );
+		if ( planes == null || planes.planeSize() != width * height || !ImageProcessorUtils.isSupported( planes.type() ) )
+			return null;
+		final Object array = planes.wholeArray( 0 );
+		return array != null && PixelArrays.matchesBitDepth( array, bitDepth ) ? array : null;
+	}
 
 	private BiConsumer<?, FloatType> voxelAccessAction( Integer channel, boolean isSetVoxels )
 	{
@@ -492,13 +741,13 @@ public abstract class AbstractVirtualStack extends VirtualStack
 	@Override
 	public ImageStack duplicate()
 	{
-		return ImageStackUtils.duplicate( this );
+		return ImageStackUtils.duplicate( this, getExecutorService() );
 	}
 
 	@Override
 	public ImageStack crop( final int x, final int y, final int z, final int width, final int height, final int depth )
 	{
-		return ImageStackUtils.crop( this, x, y, z, width, height, depth );
+		return ImageStackUtils.crop( this, x, y, z, width, height, depth, getExecutorService() );
 	}
 
 	@Override
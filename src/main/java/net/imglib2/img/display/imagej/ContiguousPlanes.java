@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.display.imagej;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imagej.ImgPlus;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * Direct access to the XY-planes of an image, that stores each plane in a
+ * contiguous region of a primitive array. This is the case for
+ * {@link ArrayImg} and {@link PlanarImg}, also if wrapped into an
+ * {@link ImgPlus}.
+ * <p>
+ * The planes are indexed like the planes of an {@link ImageJVirtualStack}.
+ */
+class ContiguousPlanes
+{
+
+	/**
+	 * Returns {@link ContiguousPlanes} for the given image, or null if the
+	 * image doesn't store its XY-planes in contiguous regions of primitive
+	 * arrays.
+	 */
+	public static ContiguousPlanes of( final RandomAccessibleInterval< ? > image )
+	{
+		if ( image instanceof ImgPlus )
+			return of( ( ( ImgPlus< ? > ) image ).getImg() );
+		if ( image.numDimensions() < 2 )
+			return null;
+		final int planeSize = ( int ) ( image.dimension( 0 ) * image.dimension( 1 ) );
+		if ( image instanceof ArrayImg )
+		{
+			final ArrayImg< ?, ? > arrayImg = ( ArrayImg< ?, ? > ) image;
+			final Object access = arrayImg.update( null );
+			if ( !( access instanceof ArrayDataAccess ) )
+				return null;
+			final Object array = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+			if ( array == null )
+				return null;
+			return new ContiguousPlanes( ( NativeType< ? > ) arrayImg.firstElement(), planeSize, array, null );
+		}
+		if ( image instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > planarImg = ( PlanarImg< ?, ? > ) image;
+			return new ContiguousPlanes( ( NativeType< ? > ) planarImg.firstElement(), planeSize, null, planarImg );
+		}
+		return null;
+	}
+
+	private final NativeType< ? > type;
+
+	private final int planeSize;
+
+	private final Object array;
+
+	private final PlanarImg< ?, ? > planarImg;
+
+	/**
+	 * The plane arrays of the {@link PlanarImg}, that have been returned by
+	 * {@link #wholeArray(int)}. NB: Arrays have identity equality.
+	 */
+	private final Set< Object > wholeArrays = ConcurrentHashMap.newKeySet();
+
+	private ContiguousPlanes( final NativeType< ? > type, final int planeSize, final Object array, final PlanarImg< ?, ? > planarImg )
+	{
+		this.type = type;
+		this.planeSize = planeSize;
+		this.array = array;
+		this.planarImg = planarImg;
+	}
+
+	/**
+	 * Returns the pixel type of the image.
+	 */
+	public NativeType< ? > type()
+	{
+		return type;
+	}
+
+	/**
+	 * Returns the number of pixels per XY-plane.
+	 */
+	public int planeSize()
+	{
+		return planeSize;
+	}
+
+	/**
+	 * Returns the primitive array that stores the specified plane, or null if
+	 * the array is not available.
+	 *
+	 * @param index Zero based index of the plane.
+	 */
+	public Object array( final int index )
+	{
+		if ( planarImg == null )
+			return array;
+		final ArrayDataAccess< ? > plane = planarImg.getPlane( index );
+		return plane == null ? null : plane.getCurrentStorageArray();
+	}
+
+	/**
+	 * Returns the position of the first pixel of the specified plane in the
+	 * array returned by {@link #array(int)}.
+	 *
+	 * @param index Zero based index of the plane.
+	 */
+	public int offset( final int index )
+	{
+		return planarImg == null ? index * planeSize : 0;
+	}
+
+	/**
+	 * Returns the array that stores the specified plane, if the array contains
+	 * nothing but the specified plane. Returns null otherwise.
+	 *
+	 * @param index Zero based index of the plane.
+	 */
+	public Object wholeArray( final int index )
+	{
+		final Object array = array( index );
+		if ( array == null || offset( index ) != 0 || PixelArrays.length( array ) != planeSize )
+			return null;
+		if ( planarImg != null )
+			wholeArrays.add( array );
+		return array;
+	}
+
+	/**
+	 * Returns true if the given array is used to store pixels of the image,
+	 * and could have been handed out: it is the array of an {@link ArrayImg},
+	 * or has been returned by {@link #wholeArray(int)}. This is a constant
+	 * time lookup, the planes of a {@link PlanarImg} are not accessed.
+	 */
+	public boolean isBackingArray( final Object pixels )
+	{
+		if ( planarImg == null )
+			return pixels == array;
+		return wholeArrays.contains( pixels );
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Bulk conversion of pixel data, from the primitive array of an
+ * {@link net.imglib2.img.array.ArrayImg} or
+ * {@link net.imglib2.img.planar.PlanarImg} into an ImageJ pixel array.
+ * <p>
+ * The results are identical to the pixel by pixel conversion done by the
+ * sampler converters of {@link ImageJVirtualStackUnsignedByte},
+ * {@link ImageJVirtualStackUnsignedShort} and {@link ImageJVirtualStackFloat}:
+ * Values are rounded and clamped to 0..255 or 0..65535 for 8 and 16 bit, and
+ * clamped to the float range for 32 bit.
+ * <p>
+ * Supported source types are {@link DoubleType}, {@link FloatType},
+ * {@link IntType}, {@link LongType} and {@link ShortType}.
+ * <p>
+ * The inverse conversion, see {@link #convertBack}, writes ImageJ pixels into
+ * the primitive array of a {@link DoubleType} or {@link FloatType} image.
+ * The results are again identical to those of the sampler converters.
+ */
+class ConversionKernels
+{
+	private ConversionKernels()
+	{
+		// prevent from instantiation
+	}
+
+	/**
+	 * Returns true if pixels of the given type can be converted to the ImageJ
+	 * pixel type of the given bit depth. ARGB (24 bit) is not supported.
+	 */
+	public static boolean isSupported( final NativeType< ? > sourceType, final int bitDepth )
+	{
+		if ( bitDepth != 8 && bitDepth != 16 && bitDepth != 32 )
+			return false;
+		final Class< ? > c = sourceType.getClass();
+		return c == DoubleType.class || c == FloatType.class || c == IntType.class ||
+				c == LongType.class || c == ShortType.class;
+	}
+
+	/**
+	 * Converts {@code length} pixels, starting at {@code offset} of the
+	 * source array, into the target array. The source array must be the
+	 * storage array of a type, that is supported according to
+	 * {@link #isSupported(NativeType, int)}. The target must be byte[],
+	 * short[] or float[].
+	 */
+	public static void convert( final Object source, final int offset, final Object target, final int length )
+	{
+		if ( target instanceof byte[] )
+			toBytes( source, offset, ( byte[] ) target, length );
+		else if ( target instanceof short[] )
+			toShorts( source, offset, ( short[] ) target, length );
+		else if ( target instanceof float[] )
+			toFloats( source, offset, ( float[] ) target, length );
+		else
+			throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	/**
+	 * Returns true if ImageJ pixels can be written back into an image of the
+	 * given type, by {@link #convertBack}.
+	 */
+	public static boolean isInvertible( final NativeType< ? > sourceType )
+	{
+		final Class< ? > c = sourceType.getClass();
+		return c == DoubleType.class || c == FloatType.class;
+	}
+
+	/**
+	 * Converts {@code length} ImageJ pixels, starting at {@code pixelsOffset}
+	 * of the byte[], short[] or float[] array, and writes them into the
+	 * target array, starting at {@code targetOffset}. The target array must
+	 * be the storage array of a type, that is supported according to
+	 * {@link #isInvertible(NativeType)}.
+	 */
+	public static void convertBack( final Object pixels, final int pixelsOffset, final Object target, final int targetOffset, final int length )
+	{
+		if ( target instanceof double[] )
+			backToDoubles( pixels, pixelsOffset, ( double[] ) target, targetOffset, length );
+		else if ( target instanceof float[] )
+			backToFloats( pixels, pixelsOffset, ( float[] ) target, targetOffset, length );
+		else
+			throw new IllegalArgumentException( "unsupported target array" );
+	}
+
+	private static void backToDoubles( final Object pixels, final int pixelsOffset, final double[] target, final int targetOffset, final int length )
+	{
+		// NB: ImageJ pixels are always within the range of DoubleType.
+		if ( pixels instanceof byte[] )
+		{
+			final byte[] p = ( byte[] ) pixels;
+			for ( int i = 0; i < length; i++ )
+				target[ targetOffset + i ] = p[ pixelsOffset + i ] & 0xff;
+		}
+		else if ( pixels instanceof short[] )
+		{
+			final short[] p = ( short[] ) pixels;
+			for ( int i = 0; i < length; i++ )
+				target[ targetOffset + i ] = p[ pixelsOffset + i ] & 0xffff;
+		}
+		else if ( pixels instanceof float[] )
+		{
+			final float[] p = ( float[] ) pixels;
+			for ( int i = 0; i < length; i++ )
+				target[ targetOffset + i ] = p[ pixelsOffset + i ];
+		}
+		else
+			throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	private static void backToFloats( final Object pixels, final int pixelsOffset, final float[] target, final int targetOffset, final int length )
+	{
+		if ( pixels instanceof byte[] )
+		{
+			final byte[] p = ( byte[] ) pixels;
+			for ( int i = 0; i < length; i++ )
+				target[ targetOffset + i ] = p[ pixelsOffset + i ] & 0xff;
+		}
+		else if ( pixels instanceof short[] )
+		{
+			final short[] p = ( short[] ) pixels;
+			for ( int i = 0; i < length; i++ )
+				target[ targetOffset + i ] = p[ pixelsOffset + i ] & 0xffff;
+		}
+		else if ( pixels instanceof float[] )
+		{
+			// NB: Infinite values are clamped, NaN is kept.
+			final float[] p = ( float[] ) pixels;
+			for ( int i = 0; i < length; i++ )
+				target[ targetOffset + i ] = Math.max( -Float.MAX_VALUE, Math.min( Float.MAX_VALUE, p[ pixelsOffset + i ] ) );
+		}
+		else
+			throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	private static void toBytes( final Object source, final int offset, final byte[] target, final int length )
+	{
+		// NB: For integer values, rounding and clamping in double precision
+		// is the same as clamping the integer.
+		if ( source instanceof double[] )
+		{
+			final double[] s = ( double[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( byte ) Math.max( 0, Math.min( 255, s[ offset + i ] + 0.5 ) );
+		}
+		else if ( source instanceof float[] )
+		{
+			final float[] s = ( float[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( byte ) Math.max( 0, Math.min( 255, s[ offset + i ] + 0.5 ) );
+		}
+		else if ( source instanceof int[] )
+		{
+			final int[] s = ( int[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( byte ) Math.max( 0, Math.min( 255, s[ offset + i ] ) );
+		}
+		else if ( source instanceof long[] )
+		{
+			final long[] s = ( long[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( byte ) Math.max( 0, Math.min( 255, s[ offset + i ] ) );
+		}
+		else if ( source instanceof short[] )
+		{
+			final short[] s = ( short[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( byte ) Math.max( 0, Math.min( 255, s[ offset + i ] ) );
+		}
+		else
+			throw new IllegalArgumentException( "unsupported source array" );
+	}
+
+	private static void toShorts( final Object source, final int offset, final short[] target, final int length )
+	{
+		if ( source instanceof double[] )
+		{
+			final double[] s = ( double[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( short ) ( int ) Math.max( 0, Math.min( 65535, s[ offset + i ] + 0.5 ) );
+		}
+		else if ( source instanceof float[] )
+		{
+			final float[] s = ( float[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( short ) ( int ) Math.max( 0, Math.min( 65535, s[ offset + i ] + 0.5 ) );
+		}
+		else if ( source instanceof int[] )
+		{
+			final int[] s = ( int[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( short ) Math.max( 0, Math.min( 65535, s[ offset + i ] ) );
+		}
+		else if ( source instanceof long[] )
+		{
+			final long[] s = ( long[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( short ) Math.max( 0, Math.min( 65535, s[ offset + i ] ) );
+		}
+		else if ( source instanceof short[] )
+		{
+			final short[] s = ( short[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( short ) Math.max( 0, s[ offset + i ] );
+		}
+		else
+			throw new IllegalArgumentException( "unsupported source array" );
+	}
+
+	private static void toFloats( final Object source, final int offset, final float[] target, final int length )
+	{
+		if ( source instanceof double[] )
+		{
+			final double[] s = ( double[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( float ) Math.max( -Float.MAX_VALUE, Math.min( Float.MAX_VALUE, s[ offset + i ] ) );
+		}
+		else if ( source instanceof float[] )
+			System.arraycopy( source, offset, target, 0, length );
+		else if ( source instanceof int[] )
+		{
+			final int[] s = ( int[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = s[ offset + i ];
+		}
+		else if ( source instanceof long[] )
+		{
+			// NB: Convert via double, like getRealDouble() does.
+			final long[] s = ( long[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = ( float ) ( double ) s[ offset + i ];
+		}
+		else if ( source instanceof short[] )
+		{
+			final short[] s = ( short[] ) source;
+			for ( int i = 0; i < length; i++ )
+				target[ i ] = s[ offset + i ];
+		}
+		else
+			throw new IllegalArgumentException( "unsupported source array" );
+	}
+}
@@ -79,6 +79,14 @@ import ij.VirtualStack;
  * {@code ImageJFunctions.wrap(img, title)}.
  * (For details on this see {@link ImageJVirtualStack}).
  * </p>
+ * <p>
+ * The virtual stacks created without an {@link ExecutorService} render,
+ * duplicate and crop their planes in parallel on a shared pool, see
+ * {@link RenderExecutors}. This requires that the wrapped image supports
+ * concurrent reads. Call
+ * {@code ImageJFunctions.setRenderPolicy(RenderExecutors.Policy.SEQUENTIAL)}
+ * to process the planes on the calling thread instead.
+ * </p>
  *
  * @author Tobis Pietzsch
  * @author Stephan Preibisch
@@ -88,6 +96,24 @@ public class ImageJFunctions
 {
 	final static AtomicInteger ai = new AtomicInteger();
 
+	/**
+	 * Sets the {@link RenderExecutors.Policy} of the virtual stacks that are
+	 * created without an {@link ExecutorService}. Use
+	 * {@link RenderExecutors.Policy#SEQUENTIAL} for images that don't support
+	 * concurrent reads.
+	 *
+	 * @see RenderExecutors#setPolicy(RenderExecutors.Policy)
+	 */
+	public static void setRenderPolicy( final RenderExecutors.Policy policy )
+	{
+		RenderExecutors.setPolicy( policy );
+	}
+
+	public static RenderExecutors.Policy getRenderPolicy()
+	{
+		return RenderExecutors.getPolicy();
+	}
+
 	public static < T extends NumericType< T > & NativeType< T > > Img< T > wrap( final ImagePlus imp )
 	{
 		return ImagePlusAdapter.wrap( imp );
@@ -34,31 +34,56 @@
 
 package net.imglib2.img.display.imagej;
 
+import ij.ImagePlus;
 import ij.ImageStack;
 import ij.VirtualStack;
 import ij.process.ImageProcessor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.converter.Converters;
 import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.projector.CancellableProjector;
+import net.imglib2.display.projector.ForkJoinIterableIntervalProjector2D;
 import net.imglib2.display.projector.IterableIntervalProjector2D;
 import net.imglib2.display.projector.MultithreadedIterableIntervalProjector2D;
+import net.imglib2.display.projector.Projector;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
+import java.awt.EventQueue;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 
@@ -78,20 +103,92 @@ import java.util.stream.LongStream;
  * wraps around a copy of the pixels of the image plane too. So methods like
  * {@link ImageProcessor#set(int, int, int)} will not change the content of
  * wrapped {@link RandomAccessibleInterval}.
+ * <p>
+ * There is one exception: If the stack is writable and the wrapped image is an
+ * {@link ArrayImg} or {@link PlanarImg} of the ImageJ pixel type, that stores
+ * each plane in a separate array, {@link #getPixels(int)} returns the array
+ * that backs the image, no copy is made. This behaves like
+ * {@link PlanarImgToVirtualStack}.
+ * <p>
+ * Rendering a plane might be expensive, for example if the wrapped
+ * {@link RandomAccessibleInterval} is a converted or lazily computed view.
+ * {@link #setPlaneCacheSize(long)} enables a cache for the rendered planes.
+ * {@link #setPrefetchRadius(int)} additionally renders the neighboring planes
+ * in the background.
+ * <p>
+ * Writing to the wrapped {@link RandomAccessibleInterval} might be expensive
+ * too. Planes are written in bulk, if the image is an {@link ArrayImg} or
+ * {@link PlanarImg} of the ImageJ pixel type. Stacks created by {@code wrap}
+ * also write planes of {@code DoubleType} and {@code FloatType} images in
+ * bulk. {@link #setWriteBackBufferSize(int)} enables buffering of the planes
+ * written by {@link #setPixels}. Buffered planes are written back by
+ * {@link #saveChanges(int)} or {@link #flushChanges()}.
+ * <p>
+ * Every call to {@link #getPixels} returns a new pixel array. To reduce the
+ * garbage produced while scrolling through a stack,
+ * {@link #setBufferPoolSize(int)} enables reuse of the arrays, that callers
+ * hand back by {@link #releasePixels(Object)}.
+ * <p>
+ * {@link #setRenderMetrics(RenderMetrics)} collects render latencies and
+ * cache hits, to find out why a stack is slow.
+ * <p>
+ * For slow sources, {@link #setProgressiveRendering(int)} lets
+ * {@link #getProcessor} return a quickly rendered preview, while the exact
+ * plane is rendered in the background.
  */
 public class ImageJVirtualStack< T extends NativeType< T > > extends AbstractVirtualStack
 {
 
+	private static final int MIN_PIXELS_PER_WRITE_TASK = 1 << 18;
+
+	/**
+	 * Subsampling of the preview, that is returned for a plane, whose
+	 * rendering has been superseded.
+	 */
+	private static final int SUPERSEDED_PREVIEW_SUBSAMPLING = 8;
+
 	final private long[] higherSourceDimensions;
 
 	final private RandomAccessibleInterval< T > source;
 
 	private final T type;
 
+	private final ContiguousPlanes planes;
+
+	private ContiguousPlanes unconvertedPlanes = null;
+
 	private boolean isWritable = false;
 
 	protected ExecutorService service;
 
+	private PlaneCache cache = null;
+
+	private int prefetchRadius = 0;
+
+	private final ConcurrentHashMap< Integer, Future< Object > > prefetching = new ConcurrentHashMap<>();
+
+	private int writeBackBufferSize = 0;
+
+	private final Map< Integer, Object > dirtyPlanes = new LinkedHashMap<>();
+
+	private PlaneBufferPool bufferPool = null;
+
+	private final PlaneStatistics statistics = new PlaneStatistics();
+
+	/**
+	 * Counts the changes of each plane, such that renders that overlap a
+	 * change don't cache outdated pixels.
+	 */
+	private final AtomicIntegerArray planeGenerations;
+
+	private int progressiveSubsampling = 0;
+
+	private volatile IntConsumer refinedListener = null;
+
+	private boolean cancelSupersededRenders = false;
+
+	private final AtomicReference< DisplayRender > displayRender = new AtomicReference<>();
+
 	/* old constructor -> non-multithreaded projector */
 	protected < S > ImageJVirtualStack( final RandomAccessibleInterval< S > source, final Converter< ? super S, T > converter,
 			final T type, final int bitDepth )
@@ -116,6 +213,31 @@ public class ImageJVirtualStack< T extends NativeType< T > > extends AbstractVir
 		this.source = zeroMin( source );
 		this.type = Util.getTypeFromInterval( source );
 		this.higherSourceDimensions = initHigherDimensions( source );
+		this.planes = initPlanes( this.source, type );
+		this.planeGenerations = new AtomicIntegerArray( multiply( higherSourceDimensions ) );
+	}
+
+	/**
+	 * Enables the bulk conversion of entire planes, see
+	 * {@link ConversionKernels}. The wrapped image must be the given image,
+	 * converted by the sampler converter of the subclass. Has no effect if
+	 * the given image is not an {@link ArrayImg} or {@link PlanarImg} of a
+	 * type supported by {@link ConversionKernels}.
+	 */
+	void setUnconvertedSource( final RandomAccessibleInterval< ? > unconverted )
+	{
+		final ContiguousPlanes planes = ContiguousPlanes.of( unconverted );
+		final boolean supported = planes != null && Intervals.equalDimensions( unconverted, source ) &&
+				ConversionKernels.isSupported( planes.type(), getBitDepth() );
+		this.unconvertedPlanes = supported ? planes : null;
+	}
+
+	private static ContiguousPlanes initPlanes( final RandomAccessibleInterval< ? > source, final NativeType< ? > type )
+	{
+		final ContiguousPlanes planes = ContiguousPlanes.of( source );
+		if ( planes == null || planes.type().getClass() != type.getClass() || !ImageProcessorUtils.isSupported( type ) )
+			return null;
+		return planes;
 	}
 
 	private static int multiply( final long[] higherSourceDimensions )
@@ -135,11 +257,28 @@ public class ImageJVirtualStack< T extends NativeType< T > > extends AbstractVir
 		return Views.isZeroMin( source ) ? source : Views.zeroMin( source );
 	}
 
+	/**
+	 * Sets the {@link ExecutorService} used to render and write planes in
+	 * parallel. If it is a {@link ForkJoinPool}, the planes are split into
+	 * blocks of rows that are balanced by work stealing. If null, the
+	 * {@link ExecutorService} given by {@link RenderExecutors#getDefault()} is
+	 * used. It is also used by {@link #getVoxels}, {@link #duplicate()} and
+	 * {@link #crop}, that access several planes concurrently. The source must
+	 * support concurrent reads, unless the {@link RenderExecutors.Policy} is
+	 * {@link RenderExecutors.Policy#SEQUENTIAL}.
+	 */
 	public void setExecutorService( ExecutorService service )
 	{
 		this.service = service;
 	}
 
+	@Override
+	protected ExecutorService getExecutorService()
+	{
+		final ExecutorService service = this.service;
+		return service != null ? service : RenderExecutors.getDefault();
+	}
+
 	/**
 	 * Set if the {@link ImageStack} is writable.
 	 * <p>
@@ -156,6 +295,336 @@ public class ImageJVirtualStack< T extends NativeType< T > > extends AbstractVir
 		isWritable = writable;
 	}
 
+	/**
+	 * Enable or disable the cache for rendered planes.
+	 * <p>
+	 * If enabled, the rendered planes are kept in a least recently used cache
+	 * that holds up to the given number of bytes of pixel data. Planes are
+	 * removed from the cache if they are modified by {@link #setPixels} or
+	 * {@link #setVoxels}. Changes to the wrapped {@link RandomAccessibleInterval}
+	 * that are made by other means are not detected, call
+	 * {@link #invalidatePlaneCache()} in this case.
+	 *
+	 * @param maxBytes Maximal number of bytes of cached pixel data. Zero
+	 *                 disables the cache.
+	 */
+	public void setPlaneCacheSize( final long maxBytes )
+	{
+		cache = maxBytes > 0 ? new PlaneCache( maxBytes ) : null;
+	}
+
+	/**
+	 * Enable or disable prefetching of neighboring planes.
+	 * <p>
+	 * If enabled, every request for a plane triggers the rendering of the
+	 * planes, that are up to the given radius away in channel, Z or time
+	 * direction. The planes are rendered in the background, using the
+	 * {@link ExecutorService} set by {@link #setExecutorService(ExecutorService)}.
+	 * Prefetching has no effect if there is no {@link ExecutorService}.
+	 * <p>
+	 * The prefetched planes are stored in the plane cache. If the plane
+	 * cache is not enabled yet, it is enabled with a size sufficient to hold
+	 * all neighboring planes.
+	 *
+	 * @param radius Number of planes to prefetch in each direction, zero
+	 *               disables prefetching.
+	 * @see #setPlaneCacheSize(long)
+	 */
+	public void setPrefetchRadius( final int radius )
+	{
+		this.prefetchRadius = Math.max( 0, radius );
+		if ( prefetchRadius > 0 && cache == null )
+			setPlaneCacheSize( 2 * ( maxPrefetchedPlanes() + 1 ) * bytesPerPlane() );
+	}
+
+	private int maxPrefetchedPlanes()
+	{
+		return 2 * prefetchRadius * higherSourceDimensions.length;
+	}
+
+	private long bytesPerPlane()
+	{
+		final int bitDepth = getBitDepth();
+		final int bytesPerPixel = bitDepth == 8 ? 1 : bitDepth == 16 ? 2 : 4;
+		return ( long ) getWidth() * getHeight() * bytesPerPixel;
+	}
+
+	/**
+	 * Removes all planes from the cache, that is enabled by
+	 * {@link #setPlaneCacheSize(long)}. Also forgets the per-plane statistics
+	 * returned by {@link #getPlaneMinMax(int)}.
+	 */
+	public void invalidatePlaneCache()
+	{
+		for ( int i = 0; i < planeGenerations.length(); i++ )
+			planeGenerations.incrementAndGet( i );
+		if ( cache != null )
+			cache.invalidateAll();
+		statistics.invalidateAll();
+	}
+
+	/**
+	 * Returns the minimum and maximum pixel value of the specified plane, as
+	 * array {min, max}. NaN values are ignored, a plane without values yields
+	 * {+Infinity, -Infinity}.
+	 * <p>
+	 * The statistics are collected whenever a plane is rendered, and kept
+	 * until the plane is modified by {@link #setPixels} or {@link #setVoxels}.
+	 * The plane is only requested, if no statistics are known. ARGB planes
+	 * are not supported. No statistics are kept for the planes of a writable
+	 * stack, whose pixel arrays are handed out directly, because they can be
+	 * changed in place.
+	 *
+	 * @param index Zero based index of the plane.
+	 */
+	protected double[] getPlaneMinMax( final int index )
+	{
+		final double[] known = statistics.get( index );
+		if ( known != null )
+			return known;
+		final int generation = planeGenerations.get( index );
+		final Object pixels = getPixelsZeroBasedIndex( index );
+		// NB: Rendering the plane collects its statistics, don't scan it again.
+		final double[] rendered = statistics.get( index );
+		if ( rendered != null )
+		{
+			releasePixels( pixels );
+			return rendered;
+		}
+		final double[] minMax = PlaneStatistics.minMax( pixels );
+		// NB: A backing array, that has been handed out, can be changed at
+		// any time. Its statistics are not kept.
+		if ( !isHandedOutBackingArray( index ) )
+		{
+			statistics.put( index, minMax );
+			if ( planeGenerations.get( index ) != generation )
+				statistics.invalidate( index );
+		}
+		releasePixels( pixels );
+		return minMax;
+	}
+
+	/**
+	 * Returns the statistics of all planes in the given range of zero based
+	 * indices, that are known without requesting the plane.
+	 *
+	 * @see #getPlaneMinMax(int)
+	 */
+	protected double[][] getKnownPlaneMinMax( final int first, final int last )
+	{
+		return statistics.getRange( first, last );
+	}
+
+	/**
+	 * Enable or disable progressive rendering.
+	 * <p>
+	 * If enabled, {@link #getProcessor} doesn't wait for a plane to be
+	 * rendered. It returns a preview instead, for which only every k-th pixel
+	 * in X and Y is rendered and replicated to fill the plane. The exact plane
+	 * is rendered in the background, using the {@link ExecutorService} set by
+	 * {@link #setExecutorService(ExecutorService)}, and stored in the plane
+	 * cache. Then the listener set by {@link #setRefinedListener(IntConsumer)}
+	 * is notified, see {@link #repaintWhenRefined(ImagePlus)}.
+	 * <p>
+	 * Progressive rendering only affects {@link #getProcessor}, which ImageJ
+	 * uses for display. {@link #getPixels}, {@link #getVoxels} and all other
+	 * methods return the exact pixels. Planes that are available without
+	 * rendering are never previewed. Progressive rendering has no effect if
+	 * there is no {@link ExecutorService}. If the plane cache is not enabled
+	 * yet, it is enabled with a size sufficient for a few planes.
+	 *
+	 * @param subsampling Distance k of the rendered pixels in the preview.
+	 *                    Values below 2 disable progressive rendering.
+	 */
+	public void setProgressiveRendering( final int subsampling )
+	{
+		progressiveSubsampling = subsampling < 2 ? 0 : subsampling;
+		if ( progressiveSubsampling > 0 && cache == null )
+			setPlaneCacheSize( 4 * bytesPerPlane() );
+	}
+
+	/**
+	 * Enable or disable the cancellation of superseded renders.
+	 * <p>
+	 * If enabled, a call of {@link #getProcessor} for one plane cancels the
+	 * rendering of another plane, that is still in progress in a concurrent
+	 * call of {@link #getProcessor}. The cancelled rendering stops at the next
+	 * row, such that the latest requested plane gets the threads. The
+	 * cancelled call returns the plane from the plane cache, if available, or
+	 * else a coarse preview, that renders only every 8th pixel in X and Y (or
+	 * every k-th, see {@link #setProgressiveRendering(int)}). It never returns
+	 * an incomplete plane, and never renders the superseded plane completely.
+	 * This keeps the display responsive, when the user scrolls quickly through
+	 * a slow stack: only the latest requested plane is rendered completely.
+	 * <p>
+	 * {@link #getPixels}, {@link #getVoxels} and all other methods are never
+	 * cancelled. Rendering is cancelled at row granularity, see
+	 * {@link CancellableProjector}.
+	 */
+	public void setCancelSupersededRenders( final boolean cancel )
+	{
+		this.cancelSupersededRenders = cancel;
+	}
+
+	/**
+	 * Sets a listener that is notified, whenever a plane has been rendered in
+	 * the background and is available in the plane cache. The listener
+	 * receives the one based slice number, and is called from a background
+	 * thread.
+	 *
+	 * @see #setProgressiveRendering(int)
+	 */
+	public void setRefinedListener( final IntConsumer listener )
+	{
+		this.refinedListener = listener;
+	}
+
+	/**
+	 * Repaints the given {@link ImagePlus}, whenever the exact pixels of its
+	 * current slice have been rendered in the background.
+	 *
+	 * @see #setProgressiveRendering(int)
+	 */
+	public void repaintWhenRefined( final ImagePlus imp )
+	{
+		setRefinedListener( n -> EventQueue.invokeLater( () -> {
+			if ( imp.getCurrentSlice() != n )
+				return;
+			imp.setProcessor( getProcessor( n ) );
+			imp.updateAndDraw();
+		} ) );
+	}
+
+	/**
+	 * Enable or disable the reuse of pixel arrays.
+	 * <p>
+	 * If enabled, arrays handed back by {@link #releasePixels(Object)} are kept
+	 * in a pool, and reused for the pixel arrays returned by
+	 * {@link #getPixels}. Callers that keep a reference to an array, and don't
+	 * release it, are not affected: they still own a private copy of the
+	 * plane.
+	 *
+	 * @param maxBuffers Maximal number of arrays kept in the pool. Zero
+	 *                   disables the pool.
+	 */
+	public void setBufferPoolSize( final int maxBuffers )
+	{
+		bufferPool = maxBuffers > 0 ? new PlaneBufferPool( maxBuffers ) : null;
+	}
+
+	/**
+	 * Hands a pixel array, that was returned by {@link #getPixels}, back to
+	 * the stack. If the buffer pool is enabled, the array is reused for planes
+	 * requested later. The caller must neither read nor write the array after
+	 * releasing it.
+	 * <p>
+	 * Arrays that are used to store the pixels of the wrapped image are never
+	 * reused, such arrays are returned by {@link #getPixels} if the stack is
+	 * writable.
+	 *
+	 * @see #setBufferPoolSize(int)
+	 */
+	@Override
+	public void releasePixels( final Object pixels )
+	{
+		final PlaneBufferPool pool = this.bufferPool;
+		if ( pool == null || pixels == null || !PixelArrays.matchesBitDepth( pixels, getBitDepth() ) ||
+				PixelArrays.length( pixels ) != getWidth() * getHeight() )
+			return;
+		if ( planes != null && planes.isBackingArray( pixels ) )
+			return;
+		pool.release( pixels );
+	}
+
+	/**
+	 * Enable or disable buffering of the planes written by {@link #setPixels}.
+	 * <p>
+	 * If enabled, planes written by {@link #setPixels} are marked as dirty and
+	 * kept in a buffer, instead of being written to the wrapped
+	 * {@link RandomAccessibleInterval} immediately. The buffered planes are
+	 * returned by {@link #getPixels} and modified by {@link #setVoxels}. All
+	 * buffered planes are written back in one batch, in parallel if an
+	 * {@link ExecutorService} is set, when {@link #saveChanges(int)} or
+	 * {@link #flushChanges()} is called, or when the buffer is full.
+	 * <p>
+	 * Disabling the buffer writes back all buffered planes.
+	 *
+	 * @param maxPlanes Maximal number of buffered planes. Zero disables the
+	 *                  buffer.
+	 */
+	public void setWriteBackBufferSize( final int maxPlanes )
+	{
+		flushChanges();
+		writeBackBufferSize = Math.max( 0, maxPlanes );
+	}
+
+	/**
+	 * Returns true if there are planes buffered by {@link #setPixels}, that
+	 * are not yet written to the wrapped {@link RandomAccessibleInterval}.
+	 *
+	 * @see #setWriteBackBufferSize(int)
+	 */
+	public boolean hasUnsavedChanges()
+	{
+		synchronized ( dirtyPlanes )
+		{
+			return !dirtyPlanes.isEmpty();
+		}
+	}
+
+	/**
+	 * Writes all planes buffered by {@link #setPixels} to the wrapped
+	 * {@link RandomAccessibleInterval}.
+	 *
+	 * @see #setWriteBackBufferSize(int)
+	 */
+	public void flushChanges()
+	{
+		final Map< Integer, Object > flushed;
+		synchronized ( dirtyPlanes )
+		{
+			if ( dirtyPlanes.isEmpty() )
+				return;
+			flushed = new LinkedHashMap<>( dirtyPlanes );
+		}
+		final ExecutorService service = getExecutorService();
+		if ( service == null || flushed.size() < 2 || NestedTasks.isNested() )
+			flushed.forEach( this::writePlane );
+		else
+		{
+			final List< Callable< Void > > tasks = new ArrayList<>( flushed.size() );
+			flushed.forEach( ( index, pixels ) -> tasks.add( () -> {
+				writePlane( index, pixels );
+				return null;
+			} ) );
+			NestedTasks.invokeAll( service, tasks );
+		}
+		synchronized ( dirtyPlanes )
+		{
+			// NB: Planes that have been written again in the meantime stay dirty.
+			flushed.forEach( dirtyPlanes::remove );
+		}
+		// NB: The cache might contain planes rendered before the write back.
+		flushed.keySet().forEach( this::planeChangedZeroBasedIndex );
+	}
+
+	private Object getDirtyPlane( final int index )
+	{
+		synchronized ( dirtyPlanes )
+		{
+			return dirtyPlanes.isEmpty() ? null : dirtyPlanes.get( index );
+		}
+	}
+
+	@Override
+	protected boolean saveChangesZeroBasedIndex( final int index )
+	{
+		if ( !isWritable )
+			return false;
+		flushChanges();
+		return true;
+	}
+
 	/** True if the image is writable. */
 	@Override
 	public boolean isWritable()
@@ -167,18 +636,39 @@ public class ImageJVirtualStack< T extends NativeType< T > > extends AbstractVir
 	{
 		final int sizeX = ( int ) source.dimension( 0 );
 		final int sizeY = ( int ) source.dimension( 1 );
-		final ArrayImg< T, ? > img = new ArrayImgFactory<>( type ).create( new long[] { sizeX, sizeY } );
+		final ArrayImg< T, ? > img = ( bufferPool == null || !ImageProcessorUtils.isSupported( type ) )
+				? new ArrayImgFactory<>( type ).create( new long[] { sizeX, sizeY } )
+				: ( ArrayImg< T, ? > ) ImageProcessorUtils.createImg( newPlane(), sizeX, sizeY );
 		project( index, img, (i, o) -> o.set( i ) );
 		return img;
 	}
 
-	private void project( int index, Img< T > img, Converter< T, T > converter )
+	private void project( int index, IterableInterval< T > target, Converter< T, T > converter )
+	{
+		createProjector( index, target, converter ).map();
+	}
+
+	/**
+	 * Creates the projector that renders the specified plane into the target.
+	 * Targets with flat iteration order, like the planes of ImageJ, can be
+	 * rendered by a {@link CancellableProjector}, also if the rendering is
+	 * sequential.
+	 */
+	AbstractProjector2D createProjector( int index, IterableInterval< T > target, Converter< T, T > converter )
 	{
-		final AbstractProjector2D projector = ( service == null )
-				? new IterableIntervalProjector2D<>( 0, 1, source, img, converter )
-				: new MultithreadedIterableIntervalProjector2D<>( 0, 1, source, img, converter, service );
+		final ExecutorService service = getExecutorService();
+		final AbstractProjector2D projector;
+		final boolean parallel = service != null && !NestedTasks.isNested();
+		if ( parallel && service instanceof ForkJoinPool )
+			projector = new ForkJoinIterableIntervalProjector2D<>( 0, 1, source, target, converter, ( ForkJoinPool ) service );
+		// NB: MultithreadedIterableIntervalProjector2D requires a zero-min target.
+		else if ( parallel && Views.isZeroMin( target ) )
+			projector = new MultithreadedIterableIntervalProjector2D<>( 0, 1, source, target, converter, service );
+		else
+			// NB: Without a pool, this projector maps sequentially, but is cancellable.
+			projector = new ForkJoinIterableIntervalProjector2D<>( 0, 1, source, target, converter, null );
 		setPosition( index, projector );
-		projector.map();
+		return projector;
 	}
 
 	private void setPosition( int index, Positionable projector )
@@ -195,22 +685,567 @@ public class ImageJVirtualStack< T extends NativeType< T > > extends AbstractVir
 	@Override
 	protected Object getPixelsZeroBasedIndex( final int index )
 	{
-		final ArrayImg< T, ? > img = getSlice( index );
-		return ( ( ArrayDataAccess< ? > ) img.update( null ) ).getCurrentStorageArray();
+		final RenderMetrics metrics = getRenderMetrics();
+		final Object dirty = getDirtyPlane( index );
+		if ( dirty != null )
+		{
+			served( metrics, index );
+			return copyPlane( dirty, 0 );
+		}
+		final Object direct = getDirectPixels( index );
+		if ( direct != null )
+		{
+			served( metrics, index );
+			return direct;
+		}
+		final PlaneCache cache = this.cache;
+		if ( cache == null )
+			return renderPlane( index );
+		Object pixels = cache.get( index );
+		if ( pixels == null )
+			pixels = awaitPrefetched( index );
+		if ( pixels == null )
+		{
+			final int generation = planeGenerations.get( index );
+			pixels = renderPlane( index );
+			cacheRendered( index, pixels, generation, cache );
+		}
+		else
+			served( metrics, index );
+		prefetchNeighbors( index, cache );
+		// NB: The cached array must not be changed by the caller.
+		return copyPlane( pixels, 0 );
+	}
+
+	/**
+	 * Returns a copy of the plane that starts at the given offset of the
+	 * given array. The copy is taken from the buffer pool if possible.
+	 */
+	private Object copyPlane( final Object array, final int offset )
+	{
+		final int length = getWidth() * getHeight();
+		if ( bufferPool == null )
+			return PixelArrays.copyOfRange( array, offset, length );
+		final Object copy = newPlane();
+		System.arraycopy( array, offset, copy, 0, length );
+		return copy;
+	}
+
+	/**
+	 * Returns the pixels of the specified plane without rendering, if the
+	 * wrapped image stores the plane in a primitive array of the ImageJ pixel
+	 * type. If writable, the backing array is returned. Otherwise, or if the
+	 * array contains more than the plane, a copy is returned. Returns null if
+	 * the plane can't be accessed directly.
+	 */
+	private Object getDirectPixels( final int index )
+	{
+		if ( planes == null )
+			return null;
+		final Object array = planes.array( index );
+		if ( array == null || !PixelArrays.matchesBitDepth( array, getBitDepth() ) )
+			return null;
+		if ( isHandedOutBackingArray( index ) )
+		{
+			// NB: The caller may change the pixels without calling setPixels.
+			statistics.invalidate( index );
+			return array;
+		}
+		return copyPlane( array, planes.offset( index ) );
+	}
+
+	/**
+	 * True if {@link #getPixels} returns the array, that stores the specified
+	 * plane in the wrapped image. Such a plane can be changed without
+	 * {@link #setPixels}, so no statistics are kept for it.
+	 */
+	private boolean isHandedOutBackingArray( final int index )
+	{
+		if ( !isWritable || planes == null )
+			return false;
+		final Object array = planes.wholeArray( index );
+		return array != null && PixelArrays.matchesBitDepth( array, getBitDepth() );
+	}
+
+	private Object awaitPrefetched( final int index )
+	{
+		// NB: Waiting for a task from within another task might deadlock.
+		final Future< Object > future = NestedTasks.isNested() ? null : prefetching.get( index );
+		if ( future == null )
+			return null;
+		try
+		{
+			return future.get();
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			return null;
+		}
+	}
+
+	private void prefetchNeighbors( final int index, final PlaneCache cache )
+	{
+		final ExecutorService service = getExecutorService();
+		if ( prefetchRadius <= 0 || service == null || higherSourceDimensions.length == 0 )
+			return;
+		final int[] position = new int[ higherSourceDimensions.length ];
+		IntervalIndexer.indexToPosition( index, higherSourceDimensions, position );
+		for ( int r = 1; r <= prefetchRadius; r++ )
+		{
+			int stride = 1;
+			for ( int d = 0; d < position.length; d++ )
+			{
+				if ( position[ d ] + r < higherSourceDimensions[ d ] )
+					prefetch( index + r * stride, cache, service );
+				if ( position[ d ] - r >= 0 )
+					prefetch( index - r * stride, cache, service );
+				stride *= ( int ) higherSourceDimensions[ d ];
+			}
+		}
+	}
+
+	private void prefetch( final int index, final PlaneCache cache, final ExecutorService service )
+	{
+		if ( prefetching.size() >= maxPrefetchedPlanes() )
+			return;
+		renderInBackground( index, cache, service );
+	}
+
+	/**
+	 * Renders the specified plane in the background and stores it in the
+	 * cache, unless it is already cached or being rendered.
+	 */
+	private void renderInBackground( final int index, final PlaneCache cache, final ExecutorService service )
+	{
+		if ( cache.contains( index ) || prefetching.containsKey( index ) )
+			return;
+		final FutureTask< Object > task = new FutureTask<>( NestedTasks.nested( () -> {
+			try
+			{
+				final int generation = planeGenerations.get( index );
+				final Object pixels = renderPlane( index );
+				// NB: Don't hand out a plane, that was changed while rendering.
+				if ( !cacheRendered( index, pixels, generation, cache ) )
+					return null;
+				final IntConsumer listener = refinedListener;
+				// NB: Planes larger than the cache are not announced, the
+				// listener would request a preview again.
+				if ( listener != null && cache.contains( index ) )
+					listener.accept( toOneBasedIndex( index ) );
+				return pixels;
+			}
+			finally
+			{
+				prefetching.remove( index );
+			}
+		} ) );
+		if ( prefetching.putIfAbsent( index, task ) != null )
+			return;
+		try
+		{
+			service.execute( task );
+		}
+		catch ( RejectedExecutionException e )
+		{
+			prefetching.remove( index );
+		}
+	}
+
+	/**
+	 * Puts a rendered plane into the cache, unless the plane has been changed
+	 * since the given generation, when the rendering started. Returns false in
+	 * that case, the pixels are outdated.
+	 */
+	private boolean cacheRendered( final int index, final Object pixels, final int generation, final PlaneCache cache )
+	{
+		cache.put( index, pixels );
+		// NB: Check after the put. A change after the check invalidates the
+		// cache itself, because the generation is incremented first.
+		if ( planeGenerations.get( index ) == generation )
+			return true;
+		cache.invalidate( index );
+		statistics.invalidate( index );
+		return false;
+	}
+
+	/**
+	 * Returns a preview of the specified plane, and renders the exact plane in
+	 * the background, if progressive rendering is enabled.
+	 *
+	 * @see #setProgressiveRendering(int)
+	 */
+	@Override
+	protected Object getProcessorPixelsZeroBasedIndex( final int index )
+	{
+		final int subsampling = this.progressiveSubsampling;
+		final ExecutorService service = getExecutorService();
+		final PlaneCache cache = this.cache;
+		if ( NestedTasks.isNested() || !ImageProcessorUtils.isSupported( type ) || isAvailableWithoutRendering( index, cache ) )
+			return getPixelsZeroBasedIndex( index );
+		if ( subsampling > 0 && service != null && cache != null )
+		{
+			renderInBackground( index, cache, service );
+			return renderPreview( index, subsampling );
+		}
+		if ( cancelSupersededRenders )
+			return renderSuperseding( index, cache );
+		return getPixelsZeroBasedIndex( index );
+	}
+
+	/**
+	 * Renders the specified plane for display, and cancels the rendering of
+	 * any other plane for display, that is still in progress.
+	 *
+	 * @see #setCancelSupersededRenders(boolean)
+	 */
+	private Object renderSuperseding( final int index, final PlaneCache cache )
+	{
+		final DisplayRender request = new DisplayRender( index );
+		final DisplayRender previous = displayRender.getAndSet( request );
+		if ( previous != null && previous.index != index )
+			previous.cancel();
+		final RenderMetrics metrics = getRenderMetrics();
+		final RenderMetrics.Start start = metrics == null ? null : metrics.start();
+		final int generation = planeGenerations.get( index );
+		try
+		{
+			final Object pixels = newPlane();
+			final Img< T > img = ( Img< T > ) ImageProcessorUtils.createImg( pixels, getWidth(), getHeight() );
+			request.setProjector( createProjector( index, img, ( i, o ) -> o.set( i ) ) );
+			if ( request.isCancelled() )
+			{
+				// NB: Superseded by a newer request, the pixels are incomplete.
+				// Never hand them out, and don't render the plane again: only
+				// the latest requested plane is rendered completely.
+				releasePixels( pixels );
+				final Object cached = cache == null ? null : cache.get( index );
+				if ( cached != null )
+					return copyPlane( cached, 0 );
+				return renderPreview( index, Math.max( progressiveSubsampling, SUPERSEDED_PREVIEW_SUBSAMPLING ) );
+			}
+			recordStatistics( index, pixels, generation );
+			if ( metrics != null )
+				metrics.planeRendered( index, start );
+			if ( cache == null )
+				return pixels;
+			cacheRendered( index, pixels, generation, cache );
+			prefetchNeighbors( index, cache );
+			return copyPlane( pixels, 0 );
+		}
+		finally
+		{
+			displayRender.compareAndSet( request, null );
+		}
+	}
+
+	/**
+	 * A request to render a plane for display, that can be cancelled by a
+	 * newer request.
+	 */
+	private static class DisplayRender
+	{
+		private final int index;
+
+		private volatile boolean cancelled = false;
+
+		private volatile Projector projector = null;
+
+		private DisplayRender( final int index )
+		{
+			this.index = index;
+		}
+
+		/**
+		 * Runs the given projector, unless the request is already cancelled.
+		 */
+		private void setProjector( final Projector projector )
+		{
+			this.projector = projector;
+			if ( !cancelled )
+				projector.map();
+		}
+
+		private void cancel()
+		{
+			cancelled = true;
+			final Projector projector = this.projector;
+			if ( projector instanceof CancellableProjector )
+				( ( CancellableProjector ) projector ).cancel();
+		}
+
+		private boolean isCancelled()
+		{
+			return cancelled;
+		}
+	}
+
+	private boolean isAvailableWithoutRendering( final int index, final PlaneCache cache )
+	{
+		if ( getDirtyPlane( index ) != null || ( cache != null && cache.contains( index ) ) )
+			return true;
+		if ( unconvertedPlanes != null && unconvertedPlanes.array( index ) != null )
+			return true;
+		final Object array = planes == null ? null : planes.array( index );
+		return array != null && PixelArrays.matchesBitDepth( array, getBitDepth() );
+	}
+
+	/**
+	 * Renders every k-th pixel in X and Y of the specified plane, and
+	 * replicates the rendered pixels to fill the plane.
+	 */
+	private Object renderPreview( final int index, final int subsampling )
+	{
+		final long[] steps = new long[ source.numDimensions() ];
+		Arrays.fill( steps, 1 );
+		steps[ 0 ] = steps[ 1 ] = subsampling;
+		final RandomAccessibleInterval< T > subsampled = Views.subsample( source, steps );
+		final int smallWidth = ( int ) subsampled.dimension( 0 );
+		final int smallHeight = ( int ) subsampled.dimension( 1 );
+		final Object small = PixelArrays.newArray( getBitDepth(), smallWidth * smallHeight );
+		final Img< T > img = ( Img< T > ) ImageProcessorUtils.createImg( small, smallWidth, smallHeight );
+		// NB: The preview is cheap, don't queue it behind the background rendering.
+		final IterableIntervalProjector2D< T, T > projector = new IterableIntervalProjector2D<>( 0, 1, subsampled, img, ( i, o ) -> o.set( i ) );
+		setPosition( index, projector );
+		projector.map();
+		final Object pixels = newPlane();
+		PixelArrays.upsample( small, smallWidth, pixels, getWidth(), getHeight(), subsampling );
+		return pixels;
+	}
+
+	/**
+	 * Returns the pixels of the specified plane, but renders only the pixels
+	 * inside the given rectangle. Planes that are available without rendering
+	 * are returned entirely. The partially rendered plane is not cached.
+	 */
+	@Override
+	protected Object getPixelsZeroBasedIndex( final int index, final Rectangle roi )
+	{
+		final Object dirty = getDirtyPlane( index );
+		if ( dirty != null )
+			return copyPlane( dirty, 0 );
+		final Object direct = getDirectPixels( index );
+		if ( direct != null )
+			return direct;
+		final PlaneCache cache = this.cache;
+		final Object cached = cache == null ? null : cache.get( index );
+		if ( cached != null )
+			return copyPlane( cached, 0 );
+		if ( !ImageProcessorUtils.isSupported( type ) )
+			return getPixelsZeroBasedIndex( index );
+		final Object pixels = PixelArrays.newArray( getBitDepth(), getWidth() * getHeight() );
+		final Img< T > img = ( Img< T > ) ImageProcessorUtils.createImg( pixels, getWidth(), getHeight() );
+		project( index, Views.interval( img, Intervals.createMinSize( roi.x, roi.y, roi.width, roi.height ) ), ( i, o ) -> o.set( i ) );
+		return pixels;
+	}
+
+	private static void served( final RenderMetrics metrics, final int index )
+	{
+		if ( metrics != null )
+			metrics.planeServed( index );
+	}
+
+	private Object renderPlane( final int index )
+	{
+		final RenderMetrics metrics = getRenderMetrics();
+		final RenderMetrics.Start start = metrics == null ? null : metrics.start();
+		final Object pixels = renderPlaneUntimed( index );
+		if ( metrics != null )
+			metrics.planeRendered( index, start );
+		return pixels;
+	}
+
+	private Object renderPlaneUntimed( final int index )
+	{
+		final int generation = planeGenerations.get( index );
+		Object pixels = convertPlane( index );
+		if ( pixels == null )
+		{
+			final ArrayImg< T, ? > img = getSlice( index );
+			pixels = ( ( ArrayDataAccess< ? > ) img.update( null ) ).getCurrentStorageArray();
+		}
+		recordStatistics( index, pixels, generation );
+		return pixels;
+	}
+
+	/**
+	 * Keeps the statistics of a rendered plane, unless the plane has been
+	 * changed since the rendering started.
+	 */
+	private void recordStatistics( final int index, final Object pixels, final int generation )
+	{
+		// NB: Collecting the statistics is cheap compared to rendering.
+		if ( getBitDepth() == 24 )
+			return;
+		statistics.put( index, PlaneStatistics.minMax( pixels ) );
+		if ( planeGenerations.get( index ) != generation )
+			statistics.invalidate( index );
+	}
+
+	/**
+	 * Converts the specified plane of the unconverted source in bulk, or
+	 * returns null if that's not possible.
+	 */
+	private Object convertPlane( final int index )
+	{
+		final ContiguousPlanes unconverted = this.unconvertedPlanes;
+		final Object array = unconverted == null ? null : unconverted.array( index );
+		if ( array == null )
+			return null;
+		final Object pixels = newPlane();
+		ConversionKernels.convert( array, unconverted.offset( index ), pixels, unconverted.planeSize() );
+		return pixels;
+	}
+
+	/**
+	 * Returns a pixel array for one plane, taken from the buffer pool if
+	 * possible. The content of the array is undefined.
+	 */
+	private Object newPlane()
+	{
+		final int length = getWidth() * getHeight();
+		final PlaneBufferPool pool = this.bufferPool;
+		return pool == null ? PixelArrays.newArray( getBitDepth(), length ) : pool.acquire( getBitDepth(), length );
 	}
 
 	@Override
 	protected void setPixelsZeroBasedIndex( final int index, final Object pixels )
 	{
+		if ( writeBackBufferSize > 0 )
+		{
+			final boolean full;
+			synchronized ( dirtyPlanes )
+			{
+				// NB: Copy, the caller might continue to modify the pixels.
+				dirtyPlanes.put( index, PixelArrays.copy( pixels ) );
+				full = dirtyPlanes.size() >= writeBackBufferSize;
+			}
+			planeChangedZeroBasedIndex( index );
+			if ( full )
+				flushChanges();
+			return;
+		}
+		writePlane( index, pixels );
+		planeChangedZeroBasedIndex( index );
+	}
+
+	private void writePlane( final int index, final Object pixels )
+	{
+		if ( writePlaneInBulk( index, pixels ) )
+			return;
 		Img< T > img = ( Img< T > ) ImageProcessorUtils.createImg( pixels, getWidth(), getHeight() );
 		// NB: The use of Converter and Projector2D is a bit surprising.
 		// As the converter intentionally uses the first parameter a output.
 		project( index, img, (o, i) -> o.set( i ) );
 	}
 
+	/**
+	 * Copies or converts the pixels directly into the primitive array of the
+	 * source, see {@link ConversionKernels#convertBack}. Returns false if
+	 * that's not possible.
+	 */
+	private boolean writePlaneInBulk( final int index, final Object pixels )
+	{
+		final Object array = planes == null ? null : planes.array( index );
+		if ( array != null && PixelArrays.matchesBitDepth( array, getBitDepth() ) )
+		{
+			final int offset = planes.offset( index );
+			if ( array != pixels || offset != 0 )
+				forEachRowBlock( ( start, length ) -> System.arraycopy( pixels, start, array, offset + start, length ) );
+			return true;
+		}
+		final ContiguousPlanes unconverted = this.unconvertedPlanes;
+		final Object unconvertedArray = unconverted == null ? null : unconverted.array( index );
+		if ( unconvertedArray == null || !ConversionKernels.isInvertible( unconverted.type() ) )
+			return false;
+		final int offset = unconverted.offset( index );
+		forEachRowBlock( ( start, length ) -> ConversionKernels.convertBack( pixels, start, unconvertedArray, offset + start, length ) );
+		return true;
+	}
+
+	/**
+	 * Splits a plane into blocks of rows, and calls the given writer for each
+	 * block. Large planes are split into multiple blocks, that are written in
+	 * parallel.
+	 */
+	private void forEachRowBlock( final RowBlockWriter writer )
+	{
+		final int width = getWidth();
+		final int height = getHeight();
+		final ExecutorService service = getExecutorService();
+		final int numTasks = ( int ) Math.min( height, ( long ) width * height / MIN_PIXELS_PER_WRITE_TASK );
+		if ( service == null || numTasks < 2 || NestedTasks.isNested() )
+		{
+			writer.write( 0, width * height );
+			return;
+		}
+		final List< Callable< Void > > tasks = new ArrayList<>( numTasks );
+		for ( int i = 0; i < numTasks; i++ )
+		{
+			final int startY = ( int ) ( ( long ) height * i / numTasks );
+			final int endY = ( int ) ( ( long ) height * ( i + 1 ) / numTasks );
+			tasks.add( () -> {
+				writer.write( startY * width, ( endY - startY ) * width );
+				return null;
+			} );
+		}
+		NestedTasks.invokeAll( service, tasks );
+	}
+
+	private interface RowBlockWriter
+	{
+		/**
+		 * Writes the pixels {@code start} to {@code start + length - 1} of the
+		 * plane.
+		 */
+		void write( int start, int length );
+	}
+
+	@Override
+	protected void planeChangedZeroBasedIndex( final int index )
+	{
+		planeGenerations.incrementAndGet( index );
+		final PlaneCache cache = this.cache;
+		if ( cache != null )
+			cache.invalidate( index );
+		statistics.invalidate( index );
+	}
+
+	/**
+	 * Returns an {@link ImageJVirtualStackFloat} that wraps the same image.
+	 * Other than {@link AbstractVirtualStack#convertToFloat()}, nothing is
+	 * copied, the planes are converted on demand. The pixel values are the
+	 * same as those of a converted {@link ImageProcessor}.
+	 * <p>
+	 * The conversion falls back to an {@link ImageStack} of converted
+	 * processors for ARGB images, if slices have been deleted, or if there
+	 * are unsaved changes.
+	 */
+	@Override
+	public ImageStack convertToFloat()
+	{
+		if ( getBitDepth() == 24 || getSize() != multiply( higherSourceDimensions ) || hasUnsavedChanges() )
+			return super.convertToFloat();
+		@SuppressWarnings( "unchecked" )
+		final RandomAccessibleInterval< RealType< ? > > realSource = ( RandomAccessibleInterval< RealType< ? > > ) ( RandomAccessibleInterval< ? > ) source;
+		final ImageJVirtualStackFloat result = new ImageJVirtualStackFloat( realSource, ( i, o ) -> o.set( i.getRealFloat() ), service );
+		result.setColorModel( getColorModel() );
+		// NB: Like the processors of an ImageStack, the FloatProcessors
+		// returned by the result should compute their display range.
+		result.setMinAndMax( Double.MAX_VALUE, Double.MAX_VALUE );
+		return result;
+	}
+
 	@Override
 	protected RandomAccessibleInterval< T > getSliceZeroBasedIndex( int index )
 	{
+		// NB: If possible, return an ArrayImg. AbstractVirtualStack accesses
+		// the array of an ArrayImg directly.
+		final Object dirty = getDirtyPlane( index );
+		if ( dirty != null )
+			return ( RandomAccessibleInterval< T > ) ImageProcessorUtils.createImg( dirty, getWidth(), getHeight() );
+		final Object array = planes == null ? null : planes.wholeArray( index );
+		if ( array != null && PixelArrays.matchesBitDepth( array, getBitDepth() ) )
+			return ( RandomAccessibleInterval< T > ) ImageProcessorUtils.createImg( array, getWidth(), getHeight() );
 		RandomAccessibleInterval< T > origin = source;
 		// Get the 2D plane represented by the virtual array
 		if ( higherSourceDimensions.length > 0 )
@@ -62,7 +62,9 @@ public class ImageJVirtualStackFloat extends ImageJVirtualStack< FloatType >
 {
 	public static < T extends RealType< ? > > ImageJVirtualStackFloat wrap( final RandomAccessibleInterval< T > source )
 	{
-		return new ImageJVirtualStackFloat( toFloat(source) );
+		final ImageJVirtualStackFloat result = new ImageJVirtualStackFloat( toFloat( source ) );
+		result.setUnconvertedSource( source );
+		return result;
 	}
 
 	private static < T extends RealType< ? > > RandomAccessibleInterval<FloatType> toFloat( RandomAccessibleInterval<T> source )
@@ -91,11 +93,76 @@ public class ImageJVirtualStackFloat extends ImageJVirtualStack< FloatType >
 		setMinAndMax( 0, 1 );
 	}
 
+	/**
+	 * Sets the display range to the minimum and maximum pixel value of all
+	 * slices of the stack.
+	 * <p>
+	 * Other than {@link #setMinMax}, this doesn't iterate over the entire
+	 * image. It combines the per-plane statistics, that are collected while
+	 * planes are rendered, and kept until a plane is modified. Only planes
+	 * without known statistics are requested, in parallel if an
+	 * {@link ExecutorService} is set.
+	 */
+	public void resetMinMax()
+	{
+		final int size = getSize();
+		final double[][] minMax = new double[ size ][];
+		final ExecutorService service = getExecutorService();
+		if ( service == null || NestedTasks.isNested() )
+		{
+			for ( int i = 0; i < size; i++ )
+				minMax[ i ] = getPlaneMinMax( toZeroBasedIndex( i + 1 ) );
+		}
+		else
+		{
+			final List< Callable< Void > > tasks = new ArrayList<>( size );
+			for ( int i = 0; i < size; i++ )
+			{
+				final int slice = i;
+				tasks.add( () -> {
+					minMax[ slice ] = getPlaneMinMax( toZeroBasedIndex( slice + 1 ) );
+					return null;
+				} );
+			}
+			NestedTasks.invokeAll( service, tasks );
+		}
+		combineMinMax( minMax );
+	}
+
+	/**
+	 * Sets the display range to the minimum and maximum pixel value of those
+	 * slices, that have been rendered and not modified since. No plane is
+	 * requested, therefore this is cheap even for huge lazily computed images.
+	 *
+	 * @return false, and the display range is unchanged, if no statistics are
+	 *         known.
+	 */
+	public boolean resetMinMaxOfRenderedPlanes()
+	{
+		return combineMinMax( getKnownPlaneMinMax( toZeroBasedIndex( 1 ), toZeroBasedIndex( getSize() ) ) );
+	}
+
+	private boolean combineMinMax( final double[][] minMax )
+	{
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for ( final double[] m : minMax )
+		{
+			min = Math.min( min, m[ 0 ] );
+			max = Math.max( max, m[ 1 ] );
+		}
+		if ( min > max )
+			return false;
+		setMinAndMax( min, max );
+		return true;
+	}
+
 	public < S > void setMinMax( final RandomAccessibleInterval< S > source, final Converter< S, FloatType > converter )
 	{
-		if ( service != null )
+		final ExecutorService service = getExecutorService();
+		if ( service != null && !NestedTasks.isNested() )
 		{
-			setMinMaxMT( source, converter );
+			setMinMaxMT( source, converter, service );
 			return;
 		}
 
@@ -126,7 +193,7 @@ public class ImageJVirtualStackFloat extends ImageJVirtualStack< FloatType >
 		}
 	}
 
-	private < S > void setMinMaxMT( final RandomAccessibleInterval< S > source, final Converter< S, FloatType > converter )
+	private < S > void setMinMaxMT( final RandomAccessibleInterval< S > source, final Converter< S, FloatType > converter, final ExecutorService service )
 	{
 		final long nTasks = Runtime.getRuntime().availableProcessors();
 		long size = 1;
@@ -138,8 +205,9 @@ public class ImageJVirtualStackFloat extends ImageJVirtualStack< FloatType >
 		final List< Callable< Void > > tasks = new ArrayList<>();
 		final AtomicInteger ai = new AtomicInteger();
 
-		final ArrayList< Float > mins = new ArrayList<>( ( int ) nTasks );
-		final ArrayList< Float > maxs = new ArrayList<>( ( int ) nTasks );
+		// NB: Each task writes its own element, no synchronization needed.
+		final float[] mins = new float[ ( int ) nTasks ];
+		final float[] maxs = new float[ ( int ) nTasks ];
 
 		for ( int t = 0; t < nTasks; ++t )
 		{
@@ -177,8 +245,8 @@ public class ImageJVirtualStackFloat extends ImageJVirtualStack< FloatType >
 
 					}
 
-					mins.add( min );
-					maxs.add( max );
+					mins[ i ] = min;
+					maxs[ i ] = max;
 
 					return null;
 				}
@@ -203,10 +271,10 @@ public class ImageJVirtualStackFloat extends ImageJVirtualStack< FloatType >
 
 		for ( int t = 0; t < nTasks; t++ )
 		{
-			if ( min > mins.get( t ) )
-				min = mins.get( t );
-			if ( max < maxs.get( t ) )
-				max = maxs.get( t );
+			if ( min > mins[ t ] )
+				min = mins[ t ];
+			if ( max < maxs[ t ] )
+				max = maxs[ t ];
 		}
 
 		setMinAndMax( min, max );
@@ -56,7 +56,9 @@ public class ImageJVirtualStackUnsignedByte extends ImageJVirtualStack< Unsigned
 {
 	public static < T extends RealType< ? > > ImageJVirtualStackUnsignedByte wrap( final RandomAccessibleInterval< T > source )
 	{
-		return new ImageJVirtualStackUnsignedByte( toUnsignedByteType( source ) );
+		final ImageJVirtualStackUnsignedByte result = new ImageJVirtualStackUnsignedByte( toUnsignedByteType( source ) );
+		result.setUnconvertedSource( source );
+		return result;
 	}
 
 	private static < T extends RealType< ? > > RandomAccessibleInterval< UnsignedByteType > toUnsignedByteType( RandomAccessibleInterval< T > source )
@@ -118,7 +120,7 @@ public class ImageJVirtualStackUnsignedByte extends ImageJVirtualStack< Unsigned
 				@Override
 				public void setValue( int index, byte value )
 				{
-					double val = value;
+					double val = value & 0xff;
 					if ( val < min )
 						val = min;
 					else if ( val > max )
@@ -34,8 +34,13 @@
 
 package net.imglib2.img.display.imagej;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.LongStream;
 
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Sampler;
 import net.imglib2.converter.Converter;
@@ -47,6 +52,7 @@ import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.Unsigned12BitType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 
 /**
  * TODO
@@ -54,10 +60,33 @@ import net.imglib2.util.Util;
  */
 public class ImageJVirtualStackUnsignedShort extends ImageJVirtualStack< UnsignedShortType >
 {
+	private static final int DEFAULT_SAMPLED_PLANES = 16;
+
+	private static final int DEFAULT_SAMPLED_PIXELS_PER_PLANE = 1 << 16;
+
+	private static volatile boolean autoDisplayRange = false;
+
+	/**
+	 * If true, the stacks created afterwards set their initial display range
+	 * by {@link #setMinMaxFromPercentiles()}, instead of the full range of the
+	 * pixel type. This samples the wrapped image once, when the stack is
+	 * created. False by default.
+	 */
+	public static void setAutoDisplayRange( final boolean autoDisplayRange )
+	{
+		ImageJVirtualStackUnsignedShort.autoDisplayRange = autoDisplayRange;
+	}
+
+	public static boolean isAutoDisplayRange()
+	{
+		return autoDisplayRange;
+	}
+
 	public static < T extends RealType< ? > > ImageJVirtualStackUnsignedShort wrap( final RandomAccessibleInterval< T > source )
 	{
 		final ImageJVirtualStackUnsignedShort result = new ImageJVirtualStackUnsignedShort( toUnsignedShort( source ) );
 		result.initMinMax( Util.getTypeFromInterval( source ) );
+		result.setUnconvertedSource( source );
 		return result;
 	}
 
@@ -94,6 +123,139 @@ public class ImageJVirtualStackUnsignedShort extends ImageJVirtualStack< Unsigne
 			maxDisplay = 4095;
 
 		setMinAndMax( 0, maxDisplay );
+		if ( autoDisplayRange )
+			setMinMaxFromPercentiles();
+	}
+
+	/**
+	 * Sets the display range to approximately the 0.1 and 99.9 percentiles of
+	 * the pixel values.
+	 *
+	 * @see #setMinMaxFromPercentiles(double, double, int, int)
+	 */
+	public void setMinMaxFromPercentiles()
+	{
+		setMinMaxFromPercentiles( 0.1, 99.9, DEFAULT_SAMPLED_PLANES, DEFAULT_SAMPLED_PIXELS_PER_PLANE );
+	}
+
+	/**
+	 * Sets the display range to approximate percentiles of the pixel values.
+	 * <p>
+	 * The percentiles are computed from a histogram of a sample of the pixels.
+	 * Up to {@code maxPlanes} slices, evenly distributed over the stack, are
+	 * sampled. In each slice, up to {@code maxPixelsPerPlane} pixels are read
+	 * from the wrapped image, in whole rows that are evenly distributed over
+	 * the slice. The planes are never rendered entirely, so the number of
+	 * converted pixels is bounded by the sample size, regardless of the size
+	 * of the image. Note that the wrapped image may load more than that: a
+	 * cell image loads every cell that intersects a sampled row. The slices
+	 * are sampled in parallel, if an {@link ExecutorService} is set.
+	 *
+	 * @param lowerPercent      Lower percentile, for example 0.1.
+	 * @param upperPercent      Upper percentile, for example 99.9.
+	 * @param maxPlanes         Maximal number of sampled slices.
+	 * @param maxPixelsPerPlane Maximal number of sampled pixels per slice.
+	 * @throws IllegalArgumentException if not
+	 *             {@code 0 <= lowerPercent <= upperPercent <= 100}, or if
+	 *             {@code maxPlanes} or {@code maxPixelsPerPlane} is less than
+	 *             one.
+	 */
+	public void setMinMaxFromPercentiles( final double lowerPercent, final double upperPercent, final int maxPlanes, final int maxPixelsPerPlane )
+	{
+		if ( !( 0 <= lowerPercent && lowerPercent <= upperPercent && upperPercent <= 100 ) )
+			throw new IllegalArgumentException( "Percentiles must satisfy 0 <= lower <= upper <= 100, but are " + lowerPercent + " and " + upperPercent );
+		if ( maxPlanes < 1 || maxPixelsPerPlane < 1 )
+			throw new IllegalArgumentException( "Number of sampled planes and pixels must be positive." );
+		final int size = getSize();
+		final int nPlanes = Math.min( size, maxPlanes );
+		final int[][] histograms = new int[ nPlanes ][];
+		final ExecutorService service = getExecutorService();
+		if ( service == null || NestedTasks.isNested() )
+		{
+			for ( int i = 0; i < nPlanes; i++ )
+				histograms[ i ] = sampleHistogram( sampledIndex( i, nPlanes ), maxPixelsPerPlane );
+		}
+		else
+		{
+			final List< Callable< Void > > tasks = new ArrayList<>( nPlanes );
+			for ( int i = 0; i < nPlanes; i++ )
+			{
+				final int sample = i;
+				tasks.add( () -> {
+					histograms[ sample ] = sampleHistogram( sampledIndex( sample, nPlanes ), maxPixelsPerPlane );
+					return null;
+				} );
+			}
+			NestedTasks.invokeAll( service, tasks );
+		}
+		final long[] histogram = new long[ 1 << 16 ];
+		for ( final int[] h : histograms )
+			for ( int value = 0; value < histogram.length; value++ )
+				histogram[ value ] += h[ value ];
+		final long total = LongStream.of( histogram ).sum();
+		if ( total == 0 )
+			return;
+		setMinAndMax( lowerPercentile( histogram, total, lowerPercent ), upperPercentile( histogram, total, upperPercent ) );
+	}
+
+	/**
+	 * Returns the zero based index of the i-th of n evenly distributed slices.
+	 */
+	private int sampledIndex( final int i, final int n )
+	{
+		final int slice = ( int ) ( ( 2L * i + 1 ) * getSize() / ( 2L * n ) );
+		return toZeroBasedIndex( slice + 1 );
+	}
+
+	private int[] sampleHistogram( final int index, final int maxPixels )
+	{
+		final RandomAccessibleInterval< UnsignedShortType > plane = getSliceZeroBasedIndex( index );
+		final long width = plane.dimension( 0 );
+		final long height = plane.dimension( 1 );
+		final int[] histogram = new int[ 1 << 16 ];
+		if ( width == 0 || height == 0 )
+			return histogram;
+		// NB: Whole rows, such that the wrapped image is read sequentially.
+		final long rows = Math.max( 1, Math.min( height, maxPixels / width ) );
+		final long xStep = ( width + maxPixels - 1 ) / maxPixels;
+		for ( long r = 0; r < rows; r++ )
+		{
+			final long y = ( 2 * r + 1 ) * height / ( 2 * rows );
+			final Cursor< UnsignedShortType > cursor = Views.flatIterable( Views.interval( plane, new long[] { 0, y }, new long[] { width - 1, y } ) ).cursor();
+			for ( long x = 0; x < width; x++ )
+			{
+				cursor.fwd();
+				if ( x % xStep == 0 )
+					histogram[ cursor.get().get() ]++;
+			}
+		}
+		return histogram;
+	}
+
+	private static int lowerPercentile( final long[] histogram, final long total, final double percent )
+	{
+		final double threshold = percent / 100 * total;
+		long count = 0;
+		for ( int value = 0; value < histogram.length; value++ )
+		{
+			count += histogram[ value ];
+			if ( count > threshold )
+				return value;
+		}
+		return histogram.length - 1;
+	}
+
+	private static int upperPercentile( final long[] histogram, final long total, final double percent )
+	{
+		final double threshold = ( 100 - percent ) / 100 * total;
+		long count = 0;
+		for ( int value = histogram.length - 1; value >= 0; value-- )
+		{
+			count += histogram[ value ];
+			if ( count > threshold )
+				return value;
+		}
+		return 0;
 	}
 
 	private static class ShortConverter implements SamplerConverter< RealType< ? >, UnsignedShortType >
@@ -127,7 +289,7 @@ public class ImageJVirtualStackUnsignedShort extends ImageJVirtualStack< Unsigne
 				@Override
 				public void setValue( int index, short value )
 				{
-					double val = value;
+					double val = value & 0xffff;
 					if ( val < min )
 						val = min;
 					else if ( val > max )
@@ -33,6 +33,13 @@
  */
 package net.imglib2.img.display.imagej;
 
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import ij.ImageStack;
 import ij.process.ImageProcessor;
 
@@ -73,6 +80,125 @@ class ImageStackUtils
 		return result;
 	}
 
+	/**
+	 * Creates a copy of a given {@link ImageStack}, the planes are copied in
+	 * parallel.
+	 *
+	 * @see #crop(ImageStack, int, int, int, int, int, int, ExecutorService)
+	 */
+	public static ImageStack duplicate( ImageStack original, ExecutorService service )
+	{
+		return crop( original, 0, 0, 0, original.getWidth(), original.getHeight(), original.getSize(), service );
+	}
+
+	/**
+	 * Creates a new {@link ImageStack} by cropping the given stack. Other than
+	 * {@link #crop(ImageStack, int, int, int, int, int, int)}, this method
+	 * copies the pixel arrays directly, without creating
+	 * {@link ImageProcessor}s.
+	 * <p>
+	 * If an {@link ExecutorService} is given, the planes are requested from the
+	 * given stack and copied in parallel. At most two planes per processor are
+	 * in flight at any time, to limit the memory consumption. The given stack
+	 * must support concurrent calls to {@link ImageStack#getPixels(int)} in
+	 * this case.
+	 *
+	 * @param service {@link ExecutorService} used to copy the planes in
+	 *                parallel, or null for sequential copying.
+	 */
+	public static ImageStack crop( ImageStack stack, int x, int y, int z, int width, int height, int depth, ExecutorService service )
+	{
+		return crop( stack, x, y, z, width, height, depth, service, 2 * Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Same as {@link #crop(ImageStack, int, int, int, int, int, int, ExecutorService)},
+	 * with the given maximal number of planes in flight.
+	 */
+	public static ImageStack crop( ImageStack stack, int x, int y, int z, int width, int height, int depth, ExecutorService service, int maxPlanesInFlight )
+	{
+		if ( x < 0 || y < 0 || z < 0 || x + width > stack.getWidth() || y + height > stack.getHeight() || z + depth > stack.getSize() )
+			throw new IllegalArgumentException( "Argument out of range" );
+		ImageStack result = new ImageStack( width, height, stack.getColorModel() );
+		if ( service == null || NestedTasks.isNested() )
+		{
+			for ( int i = z; i < z + depth; i++ )
+				result.addSlice( stack.getSliceLabel( i + 1 ), cropPlane( stack, i + 1, x, y, width, height ) );
+			return result;
+		}
+		final ArrayDeque< Future< Object > > inFlight = new ArrayDeque<>();
+		int next = z;
+		try
+		{
+			for ( int i = z; i < z + depth; i++ )
+			{
+				final int n = i + 1;
+				final Callable< Object > task = () -> cropPlane( stack, n, x, y, width, height );
+				inFlight.add( service.submit( NestedTasks.nested( task ) ) );
+				if ( inFlight.size() >= Math.max( 1, maxPlanesInFlight ) )
+					result.addSlice( stack.getSliceLabel( ++next ), inFlight.poll().get() );
+			}
+			while ( !inFlight.isEmpty() )
+				result.addSlice( stack.getSliceLabel( ++next ), inFlight.poll().get() );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			throw cause instanceof RuntimeException ? ( RuntimeException ) cause : new RuntimeException( cause );
+		}
+		finally
+		{
+			inFlight.forEach( future -> future.cancel( true ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new pixel array that contains the rectangle (x, y, width,
+	 * height) of the specified plane. The pixel array returned by the given
+	 * stack is not used afterwards, and therefore handed back to the stack if
+	 * it is an {@link AbstractVirtualStack}.
+	 * <p>
+	 * A read-only {@link AbstractVirtualStack} returns a new pixel array,
+	 * that is owned by the caller. If the whole plane is requested, this
+	 * array is returned as is, without copying.
+	 */
+	private static Object cropPlane( ImageStack stack, int n, int x, int y, int width, int height )
+	{
+		final Object pixels = stack.getPixels( n );
+		final boolean ownsPixels = stack instanceof AbstractVirtualStack && !( ( AbstractVirtualStack ) stack ).isWritable();
+		if ( ownsPixels && isWholePlane( pixels, stack.getWidth(), x, y, width, height ) )
+			return pixels;
+		final Object result = cropPixels( pixels, stack.getWidth(), x, y, width, height );
+		if ( stack instanceof AbstractVirtualStack )
+			( ( AbstractVirtualStack ) stack ).releasePixels( pixels );
+		return result;
+	}
+
+	private static boolean isWholePlane( Object pixels, int stackWidth, int x, int y, int width, int height )
+	{
+		return x == 0 && y == 0 && width == stackWidth && PixelArrays.length( pixels ) == width * height;
+	}
+
+	/**
+	 * Returns a new pixel array that contains the rectangle (x, y, width,
+	 * height) of the given pixel array.
+	 */
+	private static Object cropPixels( Object pixels, int stackWidth, int x, int y, int width, int height )
+	{
+		if ( isWholePlane( pixels, stackWidth, x, y, width, height ) )
+			return PixelArrays.copy( pixels );
+		final Object result = Array.newInstance( pixels.getClass().getComponentType(), width * height );
+		for ( int row = 0; row < height; row++ )
+			System.arraycopy( pixels, ( y + row ) * stackWidth + x, result, row * width, width );
+		return result;
+	}
+
 	/**
 	 * Create a new {@link ImageStack} with same content but featuring {@link ij.process.FloatProcessor}s.
 	 */
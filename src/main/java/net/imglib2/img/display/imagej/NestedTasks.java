@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.display.imagej;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Marks tasks that the virtual stacks execute on an {@link ExecutorService}.
+ * <p>
+ * Planes that are rendered from within such a task are rendered sequentially.
+ * Splitting the work further and waiting for the parts to finish on the same
+ * {@link ExecutorService} could otherwise deadlock, if all threads of the
+ * {@link ExecutorService} are waiting.
+ */
+class NestedTasks
+{
+	private static final ThreadLocal< Boolean > ACTIVE = ThreadLocal.withInitial( () -> false );
+
+	private NestedTasks()
+	{
+		// prevent from instantiation
+	}
+
+	/**
+	 * Returns true if the current thread is executing a task that was wrapped
+	 * by {@link #nested(Callable)}.
+	 */
+	public static boolean isNested()
+	{
+		return ACTIVE.get();
+	}
+
+	/**
+	 * Wraps the given task, such that {@link #isNested()} returns true while
+	 * the task is executed.
+	 */
+	public static < V > Callable< V > nested( final Callable< V > task )
+	{
+		return () -> {
+			final boolean previous = ACTIVE.get();
+			ACTIVE.set( true );
+			try
+			{
+				return task.call();
+			}
+			finally
+			{
+				ACTIVE.set( previous );
+			}
+		};
+	}
+
+	/**
+	 * Executes the given tasks, wrapped by {@link #nested(Callable)}, on the
+	 * {@link ExecutorService} and waits for them to finish. An exception
+	 * thrown by a task is rethrown.
+	 */
+	public static < V > void invokeAll( final ExecutorService service, final List< Callable< V > > tasks )
+	{
+		final List< Callable< V > > nestedTasks = new ArrayList<>( tasks.size() );
+		for ( final Callable< V > task : tasks )
+			nestedTasks.add( nested( task ) );
+		try
+		{
+			for ( final Future< V > future : service.invokeAll( nestedTasks ) )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+}
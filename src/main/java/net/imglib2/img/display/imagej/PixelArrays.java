@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.display.imagej;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * Utility functions for the pixel arrays used by ImageJ: byte[], short[],
+ * int[] and float[].
+ */
+class PixelArrays
+{
+	private PixelArrays()
+	{
+		// prevent from instantiation
+	}
+
+	/**
+	 * Returns a new pixel array of the type ImageJ uses for the given bit
+	 * depth.
+	 */
+	public static Object newArray( final int bitDepth, final int length )
+	{
+		switch ( bitDepth )
+		{
+		case 8:
+			return new byte[ length ];
+		case 16:
+			return new short[ length ];
+		case 24:
+			return new int[ length ];
+		case 32:
+			return new float[ length ];
+		default:
+			throw new IllegalArgumentException( "unsupported bit depth: " + bitDepth );
+		}
+	}
+
+	/**
+	 * Returns the bit depth ImageJ uses for the given pixel array.
+	 */
+	public static int bitDepth( final Object pixels )
+	{
+		if ( pixels instanceof byte[] )
+			return 8;
+		if ( pixels instanceof short[] )
+			return 16;
+		if ( pixels instanceof int[] )
+			return 24;
+		if ( pixels instanceof float[] )
+			return 32;
+		throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	/**
+	 * Returns a copy of the given pixel array.
+	 */
+	public static Object copy( final Object pixels )
+	{
+		if ( pixels instanceof byte[] )
+			return ( ( byte[] ) pixels ).clone();
+		if ( pixels instanceof short[] )
+			return ( ( short[] ) pixels ).clone();
+		if ( pixels instanceof int[] )
+			return ( ( int[] ) pixels ).clone();
+		if ( pixels instanceof float[] )
+			return ( ( float[] ) pixels ).clone();
+		throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	/**
+	 * Returns a copy of a range of the given pixel array.
+	 */
+	public static Object copyOfRange( final Object pixels, final int offset, final int length )
+	{
+		if ( pixels instanceof byte[] )
+			return Arrays.copyOfRange( ( byte[] ) pixels, offset, offset + length );
+		if ( pixels instanceof short[] )
+			return Arrays.copyOfRange( ( short[] ) pixels, offset, offset + length );
+		if ( pixels instanceof int[] )
+			return Arrays.copyOfRange( ( int[] ) pixels, offset, offset + length );
+		if ( pixels instanceof float[] )
+			return Arrays.copyOfRange( ( float[] ) pixels, offset, offset + length );
+		throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	/**
+	 * Returns the length of the given primitive array.
+	 */
+	public static int length( final Object array )
+	{
+		return Array.getLength( array );
+	}
+
+	/**
+	 * Returns true if the given array is of the type ImageJ uses for the
+	 * given bit depth: byte[] for 8 bit, short[] for 16 bit, int[] for 24 bit
+	 * and float[] for 32 bit.
+	 */
+	public static boolean matchesBitDepth( final Object pixels, final int bitDepth )
+	{
+		switch ( bitDepth )
+		{
+		case 8:
+			return pixels instanceof byte[];
+		case 16:
+			return pixels instanceof short[];
+		case 24:
+			return pixels instanceof int[];
+		case 32:
+			return pixels instanceof float[];
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes occupied by the elements of the given pixel
+	 * array.
+	 */
+	public static long sizeInBytes( final Object pixels )
+	{
+		if ( pixels instanceof byte[] )
+			return ( ( byte[] ) pixels ).length;
+		if ( pixels instanceof short[] )
+			return 2L * ( ( short[] ) pixels ).length;
+		if ( pixels instanceof int[] )
+			return 4L * ( ( int[] ) pixels ).length;
+		if ( pixels instanceof float[] )
+			return 4L * ( ( float[] ) pixels ).length;
+		throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	/**
+	 * Fills the target plane by replicating each pixel of the small plane
+	 * into a block of factor x factor pixels. The small plane must have
+	 * ceil(width / factor) x ceil(height / factor) pixels.
+	 */
+	public static void upsample( final Object small, final int smallWidth, final Object target, final int width, final int height, final int factor )
+	{
+		for ( int y = 0; y < height; y++ )
+		{
+			final int row = y * width;
+			if ( y % factor != 0 )
+			{
+				System.arraycopy( target, row - width, target, row, width );
+				continue;
+			}
+			upsampleRow( small, ( y / factor ) * smallWidth, target, row, width, factor );
+		}
+	}
+
+	/**
+	 * Fills one row of the target, by filling runs of factor pixels with the
+	 * value of one pixel of the small plane.
+	 */
+	private static void upsampleRow( final Object small, final int smallRow, final Object target, final int row, final int width, final int factor )
+	{
+		final int end = row + width;
+		if ( small instanceof byte[] )
+		{
+			final byte[] s = ( byte[] ) small;
+			final byte[] t = ( byte[] ) target;
+			for ( int x = row, i = smallRow; x < end; x += factor, i++ )
+				Arrays.fill( t, x, Math.min( x + factor, end ), s[ i ] );
+		}
+		else if ( small instanceof short[] )
+		{
+			final short[] s = ( short[] ) small;
+			final short[] t = ( short[] ) target;
+			for ( int x = row, i = smallRow; x < end; x += factor, i++ )
+				Arrays.fill( t, x, Math.min( x + factor, end ), s[ i ] );
+		}
+		else if ( small instanceof int[] )
+		{
+			final int[] s = ( int[] ) small;
+			final int[] t = ( int[] ) target;
+			for ( int x = row, i = smallRow; x < end; x += factor, i++ )
+				Arrays.fill( t, x, Math.min( x + factor, end ), s[ i ] );
+		}
+		else if ( small instanceof float[] )
+		{
+			final float[] s = ( float[] ) small;
+			final float[] t = ( float[] ) target;
+			for ( int x = row, i = smallRow; x < end; x += factor, i++ )
+				Arrays.fill( t, x, Math.min( x + factor, end ), s[ i ] );
+		}
+		else
+			throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+}
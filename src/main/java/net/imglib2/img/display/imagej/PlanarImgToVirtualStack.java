@@ -158,6 +158,9 @@ public class PlanarImgToVirtualStack extends AbstractVirtualStack
 	@Override
 	protected Object getPixelsZeroBasedIndex( final int index )
 	{
+		final RenderMetrics metrics = getRenderMetrics();
+		if ( metrics != null )
+			metrics.planeServed( index );
 		return img.getPlane( indexer.applyAsInt( index ) ).getCurrentStorageArray();
 	}
 
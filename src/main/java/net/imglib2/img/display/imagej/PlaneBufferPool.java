@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of pixel arrays, that can be reused to render image planes. The
+ * arrays are grouped by bit depth and length. The pool holds at most a given
+ * number of arrays per group, additional arrays are left to the garbage
+ * collector.
+ * <p>
+ * The pool is thread safe. An array must only be released to the pool, if
+ * no one else holds a reference to it.
+ */
+class PlaneBufferPool
+{
+	private final int maxBuffers;
+
+	private final Map< Long, ArrayDeque< Object > > buffers = new HashMap<>();
+
+	PlaneBufferPool( final int maxBuffers )
+	{
+		this.maxBuffers = maxBuffers;
+	}
+
+	/**
+	 * Returns a pixel array of the given bit depth and length. The array is
+	 * taken from the pool if possible, otherwise a new array is allocated.
+	 * The content of a reused array is undefined.
+	 */
+	public Object acquire( final int bitDepth, final int length )
+	{
+		synchronized ( this )
+		{
+			final ArrayDeque< Object > group = buffers.get( key( bitDepth, length ) );
+			if ( group != null && !group.isEmpty() )
+				return group.pop();
+		}
+		return PixelArrays.newArray( bitDepth, length );
+	}
+
+	/**
+	 * Adds the given pixel array to the pool. The array is dropped, if the
+	 * pool already holds the maximal number of arrays of that kind.
+	 */
+	public synchronized void release( final Object pixels )
+	{
+		final ArrayDeque< Object > group = buffers.computeIfAbsent(
+				key( PixelArrays.bitDepth( pixels ), PixelArrays.length( pixels ) ),
+				ignore -> new ArrayDeque<>() );
+		if ( group.size() < maxBuffers )
+			group.push( pixels );
+	}
+
+	/**
+	 * Returns the number of arrays currently held by the pool.
+	 */
+	public synchronized int size()
+	{
+		return buffers.values().stream().mapToInt( ArrayDeque::size ).sum();
+	}
+
+	private static Long key( final int bitDepth, final int length )
+	{
+		return ( ( long ) bitDepth << 32 ) | length;
+	}
+}
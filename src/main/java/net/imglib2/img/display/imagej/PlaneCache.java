@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.display.imagej;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used cache for the pixel arrays of rendered image planes.
+ * The cache is bounded by the total number of bytes of the cached pixel
+ * arrays. Planes are identified by their zero based index.
+ * <p>
+ * The cache is thread safe. The cached arrays are shared, callers that hand
+ * them out must copy them.
+ */
+class PlaneCache
+{
+	private final long maxBytes;
+
+	private final LinkedHashMap< Integer, Object > planes = new LinkedHashMap<>( 16, 0.75f, true );
+
+	private long bytes = 0;
+
+	PlaneCache( final long maxBytes )
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cached pixel array of the specified plane, or null if the
+	 * plane is not cached.
+	 */
+	public synchronized Object get( final int index )
+	{
+		return planes.get( index );
+	}
+
+	/**
+	 * Returns true if the specified plane is cached. Other than
+	 * {@link #get(int)}, this doesn't count as an access of the plane.
+	 */
+	public synchronized boolean contains( final int index )
+	{
+		return planes.containsKey( index );
+	}
+
+	/**
+	 * Adds a pixel array to the cache, and evicts the least recently used
+	 * planes until the cache fits its byte budget again. Planes that are
+	 * larger than the byte budget are not cached.
+	 */
+	public synchronized void put( final int index, final Object pixels )
+	{
+		final long size = PixelArrays.sizeInBytes( pixels );
+		if ( size > maxBytes )
+			return;
+		final Object previous = planes.put( index, pixels );
+		if ( previous != null )
+			bytes -= PixelArrays.sizeInBytes( previous );
+		bytes += size;
+		final Iterator< Object > iterator = planes.values().iterator();
+		while ( bytes > maxBytes && iterator.hasNext() )
+		{
+			bytes -= PixelArrays.sizeInBytes( iterator.next() );
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Removes the specified plane from the cache.
+	 */
+	public synchronized void invalidate( final int index )
+	{
+		final Object previous = planes.remove( index );
+		if ( previous != null )
+			bytes -= PixelArrays.sizeInBytes( previous );
+	}
+
+	/**
+	 * Removes all planes from the cache.
+	 */
+	public synchronized void invalidateAll()
+	{
+		planes.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns the number of bytes currently occupied by cached planes.
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+}
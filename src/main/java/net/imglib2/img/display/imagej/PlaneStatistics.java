@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache for the minimum and maximum pixel value of image planes. Planes are
+ * identified by their zero based index.
+ * <p>
+ * The cache is thread safe.
+ */
+class PlaneStatistics
+{
+	private final Map< Integer, double[] > minMax = new HashMap<>();
+
+	/**
+	 * Returns the cached minimum and maximum of the specified plane, as array
+	 * {min, max}, or null if the plane is not cached.
+	 */
+	public synchronized double[] get( final int index )
+	{
+		return minMax.get( index );
+	}
+
+	public synchronized void put( final int index, final double[] minMax )
+	{
+		this.minMax.put( index, minMax );
+	}
+
+	public synchronized void invalidate( final int index )
+	{
+		minMax.remove( index );
+	}
+
+	public synchronized void invalidateAll()
+	{
+		minMax.clear();
+	}
+
+	/**
+	 * Returns the cached statistics of all planes with an index in the range
+	 * [first, last].
+	 */
+	public synchronized double[][] getRange( final int first, final int last )
+	{
+		return minMax.entrySet().stream()
+				.filter( entry -> entry.getKey() >= first && entry.getKey() <= last )
+				.map( Map.Entry::getValue )
+				.toArray( double[][]::new );
+	}
+
+	/**
+	 * Computes the minimum and maximum of the given pixel array, and returns
+	 * them as array {min, max}. Byte and short pixels are unsigned. NaN values
+	 * are ignored. For an array without values, {+Infinity, -Infinity} is
+	 * returned. ARGB pixels (int[]) are not supported.
+	 */
+	public static double[] minMax( final Object pixels )
+	{
+		if ( pixels instanceof byte[] )
+		{
+			final byte[] array = ( byte[] ) pixels;
+			int min = 255, max = 0;
+			for ( final byte value : array )
+			{
+				min = Math.min( min, value & 0xff );
+				max = Math.max( max, value & 0xff );
+			}
+			return array.length == 0 ? empty() : new double[] { min, max };
+		}
+		if ( pixels instanceof short[] )
+		{
+			final short[] array = ( short[] ) pixels;
+			int min = 65535, max = 0;
+			for ( final short value : array )
+			{
+				min = Math.min( min, value & 0xffff );
+				max = Math.max( max, value & 0xffff );
+			}
+			return array.length == 0 ? empty() : new double[] { min, max };
+		}
+		if ( pixels instanceof float[] )
+		{
+			float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+			for ( final float value : ( float[] ) pixels )
+			{
+				// NB: Comparisons with NaN are false.
+				if ( value < min )
+					min = value;
+				if ( value > max )
+					max = value;
+			}
+			return new double[] { min, max };
+		}
+		throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	private static double[] empty()
+	{
+		return new double[] { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Library wide policy for the {@link ExecutorService} that is used to render
+ * image planes, if no {@link ExecutorService} is given explicitly.
+ * <p>
+ * {@link ImageJVirtualStack} and {@link ImageJFunctions} use
+ * {@link #getDefault()}, whenever their {@link ExecutorService} is null. The
+ * projectors in {@code net.imglib2.display.projector} don't consult this
+ * policy: they render sequentially if they are given no
+ * {@link ExecutorService}. The default policy is {@link Policy#SHARED_POOL}.
+ * <p>
+ * The returned {@link ExecutorService}s are shared, and must not be shut
+ * down by the caller. The queue of the shared pool is unbounded: tasks of
+ * different stacks wait there in order, if more planes are requested than
+ * there are processors.
+ */
+public final class RenderExecutors
+{
+
+	public enum Policy
+	{
+		/** Render on the calling thread. */
+		SEQUENTIAL,
+
+		/**
+		 * Render on a shared, lazily created pool, with one daemon thread per
+		 * processor.
+		 */
+		SHARED_POOL,
+
+		/**
+		 * Render every task on a new virtual thread. Requires a Java runtime
+		 * with virtual threads (Java 21 or newer), otherwise the shared pool is
+		 * used.
+		 */
+		VIRTUAL_THREADS
+	}
+
+	private static volatile Policy policy = Policy.SHARED_POOL;
+
+	private static ExecutorService sharedPool = null;
+
+	private static ExecutorService virtualThreads = null;
+
+	private static boolean virtualThreadsChecked = false;
+
+	private RenderExecutors()
+	{
+		// prevent from instantiation
+	}
+
+	public static Policy getPolicy()
+	{
+		return policy;
+	}
+
+	/**
+	 * Sets the {@link Policy}. With any policy other than
+	 * {@link Policy#SEQUENTIAL}, the virtual stacks access the planes of the
+	 * wrapped image concurrently, also in {@link AbstractVirtualStack#getVoxels},
+	 * {@link AbstractVirtualStack#duplicate()} and
+	 * {@link AbstractVirtualStack#crop}. Use {@link Policy#SEQUENTIAL} for
+	 * images that don't support concurrent reads.
+	 */
+	public static void setPolicy( final Policy policy )
+	{
+		RenderExecutors.policy = Objects.requireNonNull( policy );
+	}
+
+	/**
+	 * Returns the {@link ExecutorService} according to the current
+	 * {@link Policy}, or null if the policy is {@link Policy#SEQUENTIAL}.
+	 */
+	public static ExecutorService getDefault()
+	{
+		switch ( policy )
+		{
+		case SEQUENTIAL:
+			return null;
+		case VIRTUAL_THREADS:
+			final ExecutorService virtual = virtualThreads();
+			return virtual != null ? virtual : sharedPool();
+		default:
+			return sharedPool();
+		}
+	}
+
+	/**
+	 * Returns true if the Java runtime supports virtual threads.
+	 */
+	public static boolean supportsVirtualThreads()
+	{
+		return virtualThreads() != null;
+	}
+
+	private static synchronized ExecutorService sharedPool()
+	{
+		if ( sharedPool == null )
+		{
+			final int nThreads = Runtime.getRuntime().availableProcessors();
+			final ThreadPoolExecutor pool = new ThreadPoolExecutor( nThreads, nThreads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), daemonThreadFactory() );
+			pool.allowCoreThreadTimeOut( true );
+			sharedPool = pool;
+		}
+		return sharedPool;
+	}
+
+	private static ThreadFactory daemonThreadFactory()
+	{
+		final AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread( runnable, "imglib2-ij-render-" + count.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		};
+	}
+
+	private static synchronized ExecutorService virtualThreads()
+	{
+		if ( !virtualThreadsChecked )
+		{
+			virtualThreadsChecked = true;
+			try
+			{
+				// NB: Reflection, this library is compiled for Java 8.
+				final Method method = java.util.concurrent.Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+				virtualThreads = ( ExecutorService ) method.invoke( null );
+			}
+			catch ( final ReflectiveOperationException | RuntimeException e )
+			{
+				virtualThreads = null;
+			}
+		}
+		return virtualThreads;
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the render metrics of a virtual stack: The number of rendered
+ * planes, the number of planes returned without rendering, a histogram of
+ * the render latencies, the bytes allocated while rendering and the number
+ * of tasks waiting in the executor queues.
+ * <p>
+ * Metrics are only collected, if enabled by
+ * {@link AbstractVirtualStack#setRenderMetrics(RenderMetrics)}. They can be
+ * read by the getters, observed by a {@link Listener}, or scraped via JMX
+ * after {@link #register(String)}. All methods are thread safe.
+ * <p>
+ * Allocations are measured per thread, on the thread that requested the
+ * plane. Allocations on the threads of a multi-threaded projector are not
+ * included.
+ */
+public class RenderMetrics implements RenderMetricsMXBean
+{
+
+	/**
+	 * Number of buckets of the latency histogram. Bucket 0 counts latencies
+	 * below 1 microsecond, bucket i counts latencies from 2^(i-1) to 2^i
+	 * microseconds. The last bucket also counts all longer latencies.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 24;
+
+	/**
+	 * Listener that is notified for every plane returned by the stack.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called after a plane has been rendered.
+		 *
+		 * @param index Zero based index of the plane.
+		 * @param nanos Render latency in nanoseconds.
+		 * @param allocatedBytes Bytes allocated on the rendering thread, or -1 if unknown.
+		 */
+		void planeRendered( int index, long nanos, long allocatedBytes );
+
+		/**
+		 * Called if a plane has been returned without rendering.
+		 *
+		 * @param index Zero based index of the plane.
+		 */
+		default void planeServed( int index )
+		{
+			// ignore
+		}
+	}
+
+	private final LongAdder planesRendered = new LongAdder();
+
+	private final LongAdder planesServed = new LongAdder();
+
+	private final LongAdder totalRenderNanos = new LongAdder();
+
+	private final LongAdder bytesAllocated = new LongAdder();
+
+	private final AtomicLongArray histogram = new AtomicLongArray( HISTOGRAM_BUCKETS );
+
+	private final List< Listener > listeners = new CopyOnWriteArrayList<>();
+
+	private volatile IntSupplier queueDepth = () -> 0;
+
+	public void addListener( final Listener listener )
+	{
+		listeners.add( listener );
+	}
+
+	public void removeListener( final Listener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Sets the function that returns the current number of tasks waiting in
+	 * the executor queues. Called by the virtual stack.
+	 */
+	void setQueueDepthSupplier( final IntSupplier queueDepth )
+	{
+		this.queueDepth = queueDepth;
+	}
+
+	/**
+	 * Returns a token that marks the start of a render. Pass it to
+	 * {@link #planeRendered(int, Start)} when the render is finished.
+	 */
+	Start start()
+	{
+		return new Start( System.nanoTime(), allocatedBytes() );
+	}
+
+	void planeRendered( final int index, final Start start )
+	{
+		final long nanos = System.nanoTime() - start.nanos;
+		final long allocated = start.allocatedBytes < 0 ? -1 : allocatedBytes() - start.allocatedBytes;
+		planesRendered.increment();
+		totalRenderNanos.add( nanos );
+		if ( allocated >= 0 )
+			bytesAllocated.add( allocated );
+		histogram.incrementAndGet( bucket( nanos ) );
+		for ( final Listener listener : listeners )
+			listener.planeRendered( index, nanos, allocated );
+	}
+
+	void planeServed( final int index )
+	{
+		planesServed.increment();
+		for ( final Listener listener : listeners )
+			listener.planeServed( index );
+	}
+
+	static int bucket( final long nanos )
+	{
+		final long micros = nanos / 1000;
+		return Math.min( HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros( micros ) );
+	}
+
+	@Override
+	public long getPlanesRendered()
+	{
+		return planesRendered.sum();
+	}
+
+	@Override
+	public long getPlanesServed()
+	{
+		return planesServed.sum();
+	}
+
+	@Override
+	public long getTotalRenderNanos()
+	{
+		return totalRenderNanos.sum();
+	}
+
+	@Override
+	public double getMeanRenderNanos()
+	{
+		final long rendered = planesRendered.sum();
+		return rendered == 0 ? 0 : ( double ) totalRenderNanos.sum() / rendered;
+	}
+
+	/**
+	 * Returns a copy of the latency histogram, see {@link #HISTOGRAM_BUCKETS}
+	 * for the bucket bounds.
+	 */
+	@Override
+	public long[] getRenderLatencyHistogram()
+	{
+		final long[] result = new long[ HISTOGRAM_BUCKETS ];
+		for ( int i = 0; i < result.length; i++ )
+			result[ i ] = histogram.get( i );
+		return result;
+	}
+
+	@Override
+	public long getBytesAllocated()
+	{
+		return allocatedBytes() < 0 ? -1 : bytesAllocated.sum();
+	}
+
+	@Override
+	public int getQueueDepth()
+	{
+		return queueDepth.getAsInt();
+	}
+
+	@Override
+	public void reset()
+	{
+		planesRendered.reset();
+		planesServed.reset();
+		totalRenderNanos.reset();
+		bytesAllocated.reset();
+		for ( int i = 0; i < HISTOGRAM_BUCKETS; i++ )
+			histogram.set( i, 0 );
+	}
+
+	/**
+	 * Registers the metrics at the platform MBean server, with the object
+	 * name {@code net.imglib2.img.display.imagej:type=RenderMetrics,name=<name>}.
+	 *
+	 * @return The object name, that can be passed to {@link #unregister(ObjectName)}.
+	 */
+	public ObjectName register( final String name )
+	{
+		try
+		{
+			final ObjectName objectName = new ObjectName( "net.imglib2.img.display.imagej:type=RenderMetrics,name=" + ObjectName.quote( name ) );
+			ManagementFactory.getPlatformMBeanServer().registerMBean( this, objectName );
+			return objectName;
+		}
+		catch ( final JMException e )
+		{
+			throw new IllegalStateException( e );
+		}
+	}
+
+	public static void unregister( final ObjectName objectName )
+	{
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			if ( server.isRegistered( objectName ) )
+				server.unregisterMBean( objectName );
+		}
+		catch ( final JMException e )
+		{
+			throw new IllegalStateException( e );
+		}
+	}
+
+	/**
+	 * Returns the number of tasks waiting in the queue of the given
+	 * {@link ExecutorService}, or 0 if unknown.
+	 */
+	static int queueDepth( final ExecutorService service )
+	{
+		if ( service instanceof ThreadPoolExecutor )
+			return ( ( ThreadPoolExecutor ) service ).getQueue().size();
+		if ( service instanceof ForkJoinPool )
+		{
+			final ForkJoinPool pool = ( ForkJoinPool ) service;
+			return ( int ) Math.min( Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount() );
+		}
+		return 0;
+	}
+
+	private static long allocatedBytes()
+	{
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if ( !( bean instanceof com.sun.management.ThreadMXBean ) )
+			return -1;
+		final com.sun.management.ThreadMXBean sunBean = ( com.sun.management.ThreadMXBean ) bean;
+		if ( !sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled() )
+			return -1;
+		return sunBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+	}
+
+	static final class Start
+	{
+		private final long nanos;
+
+		private final long allocatedBytes;
+
+		private Start( final long nanos, final long allocatedBytes )
+		{
+			this.nanos = nanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+/**
+ * Management interface of {@link RenderMetrics}, to read the metrics of a
+ * virtual stack via JMX, see {@link RenderMetrics#register(String)}.
+ */
+public interface RenderMetricsMXBean
+{
+
+	/** Number of planes that have been rendered. */
+	long getPlanesRendered();
+
+	/**
+	 * Number of planes that have been returned without rendering, because
+	 * they were cached, prefetched, buffered or backed by the image.
+	 */
+	long getPlanesServed();
+
+	/** Sum of the render latencies of all rendered planes, in nanoseconds. */
+	long getTotalRenderNanos();
+
+	/** Mean render latency per rendered plane, in nanoseconds. */
+	double getMeanRenderNanos();
+
+	/**
+	 * Histogram of the render latencies. See
+	 * {@link RenderMetrics#getRenderLatencyHistogram()} for the bucket bounds.
+	 */
+	long[] getRenderLatencyHistogram();
+
+	/**
+	 * Sum of the bytes allocated by the threads that called the renders, or
+	 * -1 if the Java runtime doesn't support measuring allocations.
+	 */
+	long getBytesAllocated();
+
+	/** Number of tasks that are waiting in the queues of the executors. */
+	int getQueueDepth();
+
+	/** Sets all counters to zero. */
+	void reset();
+}
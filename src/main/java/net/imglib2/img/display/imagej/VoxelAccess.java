@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.display.imagej;
+
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Copies voxels between the pixel arrays used by ImageJ (byte[], short[],
+ * int[] or float[]) and a float[] voxel array. This is used by
+ * {@link AbstractVirtualStack} to implement {@link AbstractVirtualStack#getVoxels}
+ * and {@link AbstractVirtualStack#setVoxels}.
+ * <p>
+ * The results equal the results of the generic implementation that uses
+ * {@link net.imglib2.type.numeric.RealType#setReal(float)} and
+ * {@link net.imglib2.type.numeric.RealType#getRealFloat()}.
+ */
+class VoxelAccess
+{
+	private VoxelAccess()
+	{
+		// prevent from instantiation
+	}
+
+	/**
+	 * Copies the rectangle (x0, y0, w, h) of the given plane into the voxels
+	 * array, starting at the given offset.
+	 *
+	 * @param pixels  Pixels of the plane, byte[], short[], int[] or float[].
+	 * @param width   Width of the plane.
+	 * @param channel Optional channel of int[] ARGB pixels (0 = red, 1 =
+	 *                green, 2 = blue). If null the int value is copied.
+	 */
+	public static void getVoxels( final Object pixels, final int width, final int x0, final int y0, final int w, final int h, final float[] voxels, final int offset, final Integer channel )
+	{
+		int o = offset;
+		if ( pixels instanceof byte[] )
+		{
+			final byte[] array = ( byte[] ) pixels;
+			for ( int y = y0; y < y0 + h; y++ )
+				for ( int i = y * width + x0, end = i + w; i < end; i++ )
+					voxels[ o++ ] = array[ i ] & 0xff;
+		}
+		else if ( pixels instanceof short[] )
+		{
+			final short[] array = ( short[] ) pixels;
+			for ( int y = y0; y < y0 + h; y++ )
+				for ( int i = y * width + x0, end = i + w; i < end; i++ )
+					voxels[ o++ ] = array[ i ] & 0xffff;
+		}
+		else if ( pixels instanceof float[] )
+		{
+			final float[] array = ( float[] ) pixels;
+			for ( int y = y0; y < y0 + h; y++, o += w )
+				System.arraycopy( array, y * width + x0, voxels, o, w );
+		}
+		else if ( pixels instanceof int[] )
+		{
+			final int[] array = ( int[] ) pixels;
+			if ( channel == null )
+			{
+				for ( int y = y0; y < y0 + h; y++ )
+					for ( int i = y * width + x0, end = i + w; i < end; i++ )
+						voxels[ o++ ] = array[ i ];
+			}
+			else
+			{
+				final int shift = 8 * ( 2 - channel );
+				for ( int y = y0; y < y0 + h; y++ )
+					for ( int i = y * width + x0, end = i + w; i < end; i++ )
+						voxels[ o++ ] = ( array[ i ] >> shift ) & 0xff;
+			}
+		}
+		else
+			throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+
+	/**
+	 * Copies voxels, starting at the given offset, into the rectangle (x0,
+	 * y0, w, h) of the given plane.
+	 *
+	 * @param pixels  Pixels of the plane, byte[], short[], int[] or float[].
+	 * @param width   Width of the plane.
+	 * @param channel Optional channel of int[] ARGB pixels (0 = red, 1 =
+	 *                green, 2 = blue). If null the int value is copied.
+	 */
+	public static void setVoxels( final Object pixels, final int width, final int x0, final int y0, final int w, final int h, final float[] voxels, final int offset, final Integer channel )
+	{
+		int o = offset;
+		if ( pixels instanceof byte[] )
+		{
+			final byte[] array = ( byte[] ) pixels;
+			// NB: reuse a single type, to get the same rounding as RealType.setReal
+			final UnsignedByteType type = new UnsignedByteType();
+			for ( int y = y0; y < y0 + h; y++ )
+				for ( int i = y * width + x0, end = i + w; i < end; i++ )
+				{
+					type.setReal( voxels[ o++ ] );
+					array[ i ] = ( byte ) type.get();
+				}
+		}
+		else if ( pixels instanceof short[] )
+		{
+			final short[] array = ( short[] ) pixels;
+			final UnsignedShortType type = new UnsignedShortType();
+			for ( int y = y0; y < y0 + h; y++ )
+				for ( int i = y * width + x0, end = i + w; i < end; i++ )
+				{
+					type.setReal( voxels[ o++ ] );
+					array[ i ] = ( short ) type.get();
+				}
+		}
+		else if ( pixels instanceof float[] )
+		{
+			final float[] array = ( float[] ) pixels;
+			for ( int y = y0; y < y0 + h; y++, o += w )
+				System.arraycopy( voxels, o, array, y * width + x0, w );
+		}
+		else if ( pixels instanceof int[] )
+		{
+			final int[] array = ( int[] ) pixels;
+			if ( channel == null )
+			{
+				for ( int y = y0; y < y0 + h; y++ )
+					for ( int i = y * width + x0, end = i + w; i < end; i++ )
+						array[ i ] = ( int ) voxels[ o++ ];
+			}
+			else
+			{
+				final int shift = 8 * ( 2 - channel );
+				final int mask = ~( 0xff << shift );
+				for ( int y = y0; y < y0 + h; y++ )
+					for ( int i = y * width + x0, end = i + w; i < end; i++ )
+						array[ i ] = array[ i ] & mask | ( ( ( int ) voxels[ o++ ] ) & 0xff ) << shift;
+			}
+		}
+		else
+			throw new IllegalArgumentException( "unsupported pixel type" );
+	}
+}
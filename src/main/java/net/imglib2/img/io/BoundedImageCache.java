@@ -0,0 +1,305 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.GenericByteType;
+import net.imglib2.type.numeric.integer.GenericIntType;
+import net.imglib2.type.numeric.integer.GenericShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+/**
+ * A cache of loaded images, keyed by file path and loader, that keeps the
+ * least recently used images with strong references, up to a limit of bytes. The bytes of an
+ * image are estimated from its dimensions and pixel type.
+ * <p>
+ * Other than a cache of soft references, which the JVM clears in bulk under
+ * memory pressure, the memory used by this cache is predictable. Optionally,
+ * images evicted from the bounded part are kept in a soft overflow, from where
+ * they are taken back if accessed again before the JVM clears them.
+ * <p>
+ * A cache may be shared by several lazy stacks, see
+ * {@link LazyStackOptions#imageCache(BoundedImageCache)}. The images of one
+ * path are cached separately for each loader, such that stacks that read the
+ * same files with different loaders or pixel types don't get each other's
+ * images. All methods are thread safe. Concurrent requests for the same path
+ * and loader load the image once.
+ *
+ * @see Load#lazyStack(java.util.List, CacheLoader, LazyStackOptions)
+ */
+public class BoundedImageCache
+{
+	private final long maxBytes;
+
+	private final boolean softOverflow;
+
+	private final LinkedHashMap< Key, Img< ? > > images = new LinkedHashMap<>( 16, 0.75f, true );
+
+	private final Map< Key, SoftReference< Img< ? > > > overflow = new HashMap<>();
+
+	private final ConcurrentHashMap< Key, CompletableFuture< Img< ? > > > loading = new ConcurrentHashMap<>();
+
+	private long occupiedBytes = 0;
+
+	/**
+	 * Creates a cache that keeps images of at most {@code maxBytes}, without
+	 * soft overflow.
+	 */
+	public BoundedImageCache( final long maxBytes )
+	{
+		this( maxBytes, false );
+	}
+
+	/**
+	 * @param maxBytes Upper limit for the estimated bytes of the images kept with strong references.
+	 * @param softOverflow If true, evicted images are kept with soft references.
+	 */
+	public BoundedImageCache( final long maxBytes, final boolean softOverflow )
+	{
+		this.maxBytes = maxBytes;
+		this.softOverflow = softOverflow;
+	}
+
+	/**
+	 * Returns the image of the given path. If the image is not cached for the
+	 * given loader, it is loaded with the given loader and cached.
+	 *
+	 * @throws RuntimeException if the loader fails.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public < T > Img< T > get( final String path, final CacheLoader< String, Img< T > > loader )
+	{
+		final Key key = new Key( path, loader );
+		Img< ? > img = getIfPresent( key );
+		if ( null != img )
+			return ( Img< T > )img;
+
+		final CompletableFuture< Img< ? > > future = new CompletableFuture<>();
+		final CompletableFuture< Img< ? > > existing = loading.putIfAbsent( key, future );
+		if ( null != existing )
+			return ( Img< T > )join( existing );
+
+		try
+		{
+			img = getIfPresent( key );
+			if ( null == img )
+			{
+				img = loader.get( path );
+				put( key, img );
+			}
+		}
+		catch ( final Throwable e )
+		{
+			// Also for errors, such that threads waiting for this image don't block forever
+			loading.remove( key, future );
+			future.completeExceptionally( e );
+			throw rethrow( e );
+		}
+		loading.remove( key, future );
+		future.complete( img );
+		return ( Img< T > )img;
+	}
+
+	/**
+	 * Returns the image of the given path that was loaded by the given
+	 * loader, or null if it is not cached.
+	 */
+	public Img< ? > getIfPresent( final String path, final CacheLoader< String, ? > loader )
+	{
+		return getIfPresent( new Key( path, loader ) );
+	}
+
+	private synchronized Img< ? > getIfPresent( final Key key )
+	{
+		final Img< ? > img = images.get( key );
+		if ( null != img || !softOverflow )
+			return img;
+		final SoftReference< Img< ? > > ref = overflow.remove( key );
+		final Img< ? > softImg = null == ref ? null : ref.get();
+		if ( null != softImg )
+			put( key, softImg );
+		return softImg;
+	}
+
+	private synchronized void put( final Key key, final Img< ? > img )
+	{
+		final long bytes = estimateBytes( img );
+		final Img< ? > previous = images.remove( key );
+		if ( null != previous )
+			occupiedBytes -= estimateBytes( previous );
+		if ( bytes > maxBytes )
+		{
+			addToOverflow( key, img );
+			return;
+		}
+		images.put( key, img );
+		occupiedBytes += bytes;
+		final Iterator< Map.Entry< Key, Img< ? > > > eldest = images.entrySet().iterator();
+		while ( occupiedBytes > maxBytes && eldest.hasNext() )
+		{
+			final Map.Entry< Key, Img< ? > > entry = eldest.next();
+			eldest.remove();
+			occupiedBytes -= estimateBytes( entry.getValue() );
+			addToOverflow( entry.getKey(), entry.getValue() );
+		}
+	}
+
+	private void addToOverflow( final Key key, final Img< ? > img )
+	{
+		if ( !softOverflow )
+			return;
+		overflow.values().removeIf( ref -> null == ref.get() );
+		overflow.put( key, new SoftReference<>( img ) );
+	}
+
+	/** Removes all images from the cache. */
+	public synchronized void invalidateAll()
+	{
+		images.clear();
+		overflow.clear();
+		occupiedBytes = 0;
+	}
+
+	/** The upper limit for the bytes of the images kept with strong references. */
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/** The estimated bytes of the images kept with strong references. */
+	public synchronized long getOccupiedBytes()
+	{
+		return occupiedBytes;
+	}
+
+	/** The number of images kept with strong references. */
+	public synchronized int getNumImages()
+	{
+		return images.size();
+	}
+
+	/** The number of images in the soft overflow, that have not been cleared yet. */
+	public synchronized int getNumOverflowImages()
+	{
+		overflow.values().removeIf( ref -> null == ref.get() );
+		return overflow.size();
+	}
+
+	/** Estimate of the bytes that an image occupies in memory, from its dimensions and pixel type. */
+	static long estimateBytes( final Img< ? > img )
+	{
+		return img.size() * bytesPerPixel( img.firstElement() );
+	}
+
+	/** Estimate of the bytes of an image of the given dimensions and pixel type. */
+	static long estimateBytes( final long[] dimensions, final Object type )
+	{
+		return Intervals.numElements( dimensions ) * bytesPerPixel( type );
+	}
+
+	static private int bytesPerPixel( final Object type )
+	{
+		final int bytesPerPixel;
+		if ( type instanceof GenericByteType )
+			bytesPerPixel = 1;
+		else if ( type instanceof GenericShortType )
+			bytesPerPixel = 2;
+		else if ( type instanceof GenericIntType || type instanceof FloatType || type instanceof ARGBType )
+			bytesPerPixel = 4;
+		else
+			bytesPerPixel = 8;
+		return bytesPerPixel;
+	}
+
+	static private Img< ? > join( final CompletableFuture< Img< ? > > future )
+	{
+		try
+		{
+			return future.join();
+		}
+		catch ( final CompletionException e )
+		{
+			throw rethrow( e.getCause() );
+		}
+	}
+
+	/** A file path and the loader that read it, compared by identity. */
+	static private final class Key
+	{
+		private final String path;
+
+		private final Object loader;
+
+		Key( final String path, final Object loader )
+		{
+			this.path = path;
+			this.loader = loader;
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			if ( !( obj instanceof Key ) )
+				return false;
+			final Key other = ( Key )obj;
+			return loader == other.loader && path.equals( other.path );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * path.hashCode() + System.identityHashCode( loader );
+		}
+	}
+
+	/** Throws errors and runtime exceptions as they are, and wraps checked exceptions. */
+	static private RuntimeException rethrow( final Throwable t )
+	{
+		if ( t instanceof Error )
+			throw ( Error )t;
+		return t instanceof RuntimeException ? ( RuntimeException )t : new RuntimeException( t );
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Opens the files that follow an accessed file in the background, such that
+ * sequential scans through a file sequence are not limited by the latency of
+ * opening each file. The number of bytes being loaded at the same time is
+ * limited, based on an estimate of the bytes per file.
+ */
+class FilePrefetcher
+{
+	static private final AtomicInteger poolCount = new AtomicInteger();
+
+	private final IntFunction< ? > loading_cache;
+
+	private final IntPredicate is_loaded;
+
+	private final int numFiles;
+
+	private final int distance;
+
+	private final long bytesPerFile;
+
+	private final long maxInFlightBytes;
+
+	private final ExecutorService service;
+
+	private final Set< Integer > in_flight = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong inFlightBytes = new AtomicLong();
+
+	FilePrefetcher( final IntFunction< ? > loading_cache, final IntPredicate is_loaded, final int numFiles, final long bytesPerFile, final LazyStackOptions options )
+	{
+		this.loading_cache = loading_cache;
+		this.is_loaded = is_loaded;
+		this.numFiles = numFiles;
+		this.distance = options.prefetch();
+		this.bytesPerFile = Math.max( 1, bytesPerFile );
+		this.maxInFlightBytes = options.maxInFlightBytes();
+		this.service = options.executorService() != null ? options.executorService() : createPool( options.prefetchThreads() );
+	}
+
+	/**
+	 * Called whenever the file with the given index is accessed. Starts loading
+	 * the following files, unless they are already loaded or being loaded.
+	 */
+	void accessed( final int index )
+	{
+		final int last = ( int )Math.min( numFiles - 1L, ( long )index + distance );
+		for ( int i = index + 1; i <= last; ++i )
+		{
+			if ( in_flight.contains( i ) || is_loaded.test( i ) )
+				continue;
+			if ( !reserveBytes() )
+				return;
+			if ( !in_flight.add( i ) )
+			{
+				inFlightBytes.addAndGet( -bytesPerFile );
+				continue;
+			}
+			final int k = i;
+			try
+			{
+				service.execute( () -> load( k ) );
+			}
+			catch ( final RejectedExecutionException e )
+			{
+				in_flight.remove( k );
+				inFlightBytes.addAndGet( -bytesPerFile );
+				return;
+			}
+		}
+	}
+
+	private void load( final int index )
+	{
+		try
+		{
+			loading_cache.apply( index );
+		}
+		catch ( final RuntimeException e )
+		{
+			// NB: Ignore, the failure is reported when the file is accessed.
+		}
+		finally
+		{
+			in_flight.remove( index );
+			inFlightBytes.addAndGet( -bytesPerFile );
+		}
+	}
+
+	private boolean reserveBytes()
+	{
+		while ( true )
+		{
+			final long current = inFlightBytes.get();
+			// NB: Always allow one file, even if it exceeds the limit.
+			if ( current > 0 && current + bytesPerFile > maxInFlightBytes )
+				return false;
+			if ( inFlightBytes.compareAndSet( current, current + bytesPerFile ) )
+				return true;
+		}
+	}
+
+	static private ExecutorService createPool( final int nThreads )
+	{
+		final int poolNumber = poolCount.incrementAndGet();
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor( nThreads, nThreads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			final Thread thread = new Thread( runnable, "imglib2-lazystack-prefetch-" + poolNumber + "-" + threadCount.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		pool.allowCoreThreadTimeOut( true );
+		return pool;
+	}
+}
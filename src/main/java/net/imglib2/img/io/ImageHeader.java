@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.util.Arrays;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * The dimensions and pixel type of an image, as needed by
+ * {@link Load#lazyStack} to set up the cell grid before any pixels are loaded.
+ *
+ * @see HeaderProbe
+ */
+public class ImageHeader
+{
+	private final long[] dimensions;
+
+	private final NativeType< ? > type;
+
+	private final boolean planar;
+
+	/**
+	 * @param dimensions The dimensions of the image.
+	 * @param type The pixel type of the image.
+	 * @param planar True if the loader returns the image as a {@link PlanarImg}, false otherwise.
+	 */
+	public ImageHeader( final long[] dimensions, final NativeType< ? > type, final boolean planar )
+	{
+		this.dimensions = dimensions.clone();
+		this.type = type;
+		this.planar = planar;
+	}
+
+	/** The header of an image that has been loaded already. */
+	static public ImageHeader of( final Img< ? extends NativeType< ? > > img )
+	{
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		return new ImageHeader( dimensions, img.firstElement().createVariable(), img instanceof PlanarImg );
+	}
+
+	public long[] dimensions()
+	{
+		return dimensions.clone();
+	}
+
+	public int numDimensions()
+	{
+		return dimensions.length;
+	}
+
+	public NativeType< ? > type()
+	{
+		return type;
+	}
+
+	public boolean isPlanar()
+	{
+		return planar;
+	}
+
+	/**
+	 * Throws an {@link IllegalStateException} if the given image, that has been
+	 * loaded from the given path, doesn't match this header.
+	 */
+	public void validate( final Img< ? > img, final String path )
+	{
+		final long[] actual = new long[ img.numDimensions() ];
+		img.dimensions( actual );
+		if ( !Arrays.equals( dimensions, actual ) )
+			throw new IllegalStateException( "Expected an image of dimensions " + Arrays.toString( dimensions )
+					+ " but " + path + " has dimensions " + Arrays.toString( actual ) );
+		if ( planar && !( img instanceof PlanarImg ) )
+			throw new IllegalStateException( "Expected a PlanarImg but " + path + " was loaded as " + img.getClass().getSimpleName() );
+		if ( img.firstElement().getClass() != type.getClass() )
+			throw new IllegalStateException( "Expected pixels of type " + type.getClass().getSimpleName()
+					+ " but " + path + " has pixels of type " + img.firstElement().getClass().getSimpleName() );
+	}
+}
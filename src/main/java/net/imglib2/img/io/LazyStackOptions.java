@@ -0,0 +1,273 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.cache.CacheLoader;
+
+/**
+ * Options for {@link Load#lazyStack(List, CacheLoader, LazyStackOptions)}.
+ * Each method returns a modified copy, so that options can be chained:
+ * 
+ * <pre>
+ * LazyStackOptions.options().prefetch( 8 ).maxInFlightBytes( 512L << 20 )
+ * </pre>
+ */
+public class LazyStackOptions
+{
+	/** Default limit of the bytes of files being prefetched at the same time: 256 MB. */
+	public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 256L << 20;
+
+	/** Default number of threads that open files in the background. */
+	public static final int DEFAULT_PREFETCH_THREADS = 4;
+
+	/** Bytes per pixel of the largest pixel types, like double, assumed to bound the size of a tile. */
+	private static final int MAX_BYTES_PER_PIXEL = 8;
+
+	private int prefetch = 0;
+
+	private int prefetchThreads = DEFAULT_PREFETCH_THREADS;
+
+	private long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+
+	private ExecutorService executorService = null;
+
+	private BoundedImageCache imageCache = null;
+
+	private long cellCacheBytes = 0;
+
+	private HeaderProbe headerProbe = null;
+
+	private int tileWidth = 0;
+
+	private int tileHeight = 0;
+
+	private RegionReader regionReader = null;
+
+	/** Returns the default options: no prefetching, images are cached with soft references. */
+	static public LazyStackOptions options()
+	{
+		return new LazyStackOptions();
+	}
+
+	private LazyStackOptions copy()
+	{
+		final LazyStackOptions copy = new LazyStackOptions();
+		copy.prefetch = this.prefetch;
+		copy.prefetchThreads = this.prefetchThreads;
+		copy.maxInFlightBytes = this.maxInFlightBytes;
+		copy.executorService = this.executorService;
+		copy.imageCache = this.imageCache;
+		copy.cellCacheBytes = this.cellCacheBytes;
+		copy.headerProbe = this.headerProbe;
+		copy.tileWidth = this.tileWidth;
+		copy.tileHeight = this.tileHeight;
+		copy.regionReader = this.regionReader;
+		return copy;
+	}
+
+	/**
+	 * Once the file with index i is accessed, open the files i+1 to i+n in
+	 * the background. Zero, the default, disables prefetching.
+	 */
+	public LazyStackOptions prefetch( final int n )
+	{
+		if ( n < 0 )
+			throw new IllegalArgumentException( "The number of files to prefetch must not be negative." );
+		final LazyStackOptions copy = copy();
+		copy.prefetch = n;
+		return copy;
+	}
+
+	/**
+	 * Number of threads that open files in the background. Has no effect if
+	 * an {@link ExecutorService} is set by {@link #executorService}.
+	 */
+	public LazyStackOptions prefetchThreads( final int threads )
+	{
+		if ( threads < 1 )
+			throw new IllegalArgumentException( "At least one prefetch thread is required." );
+		final LazyStackOptions copy = copy();
+		copy.prefetchThreads = threads;
+		return copy;
+	}
+
+	/**
+	 * Upper limit for the estimated bytes of all files being prefetched at the
+	 * same time. One file is always prefetched, even if it is larger.
+	 */
+	public LazyStackOptions maxInFlightBytes( final long bytes )
+	{
+		final LazyStackOptions copy = copy();
+		copy.maxInFlightBytes = bytes;
+		return copy;
+	}
+
+	/**
+	 * The {@link ExecutorService} that opens files in the background. By
+	 * default, a pool of {@link #prefetchThreads} daemon threads is created,
+	 * whose threads terminate when idle.
+	 */
+	public LazyStackOptions executorService( final ExecutorService service )
+	{
+		final LazyStackOptions copy = copy();
+		copy.executorService = service;
+		return copy;
+	}
+
+	/**
+	 * Keep the loaded images in the given {@link BoundedImageCache}, instead of
+	 * a cache of soft references. The cells of the lazy stack, that refer to
+	 * the pixels of the images, are still kept with soft references, unless
+	 * {@link #cellCacheBytes} is set. Then images evicted from the cache are
+	 * not held by the cells beyond the limit of the cache.
+	 */
+	public LazyStackOptions imageCache( final BoundedImageCache cache )
+	{
+		final LazyStackOptions copy = copy();
+		copy.imageCache = cache;
+		return copy;
+	}
+
+	/**
+	 * Keep the cells of the lazy stack in a cache bounded by the estimated
+	 * number of bytes, instead of a cache of soft references. This limit is
+	 * separate from the limit of the {@link #imageCache}: if both are set, the
+	 * cells and the images together may keep up to the sum of both limits,
+	 * since the cells may hold the pixels of evicted images. With
+	 * {@link #tiles}, the images are not cached, and this is the only limit
+	 * for the pixels read. Zero, the default, keeps cells with soft
+	 * references.
+	 */
+	public LazyStackOptions cellCacheBytes( final long bytes )
+	{
+		if ( bytes < 0 )
+			throw new IllegalArgumentException( "The number of bytes to cache must not be negative." );
+		final LazyStackOptions copy = copy();
+		copy.cellCacheBytes = bytes;
+		return copy;
+	}
+
+	/**
+	 * Read the dimensions and pixel type from the header of the first file,
+	 * instead of loading the first image. The other files are validated
+	 * against the header when they are loaded. For example, use a
+	 * {@link TiffHeaderProbe} together with {@link IJLoader}.
+	 */
+	public LazyStackOptions headerProbe( final HeaderProbe probe )
+	{
+		final LazyStackOptions copy = copy();
+		copy.headerProbe = probe;
+		return copy;
+	}
+
+	/**
+	 * Split each plane into tiles of the given size, instead of loading whole
+	 * images or planes, and read each tile with the given {@link RegionReader}
+	 * when it is accessed. Then memory and latency scale with the viewed
+	 * region, not with the size of the planes. For example, use a
+	 * {@link RawRegionReader} for uncompressed TIFF files.
+	 * <p>
+	 * If no {@link #headerProbe} is set and the reader is a
+	 * {@link HeaderProbe}, the reader is used to find out the dimensions.
+	 * Tiles can't be combined with {@link #prefetch}, since they are read
+	 * directly from the files instead of through the loaded images. Tiles are
+	 * limited to 2 GB at 8 bytes per pixel, that is about 16k x 16k pixels.
+	 */
+	public LazyStackOptions tiles( final int width, final int height, final RegionReader reader )
+	{
+		if ( null == reader )
+			throw new IllegalArgumentException( "A region reader is required to read tiles." );
+		if ( width < 1 || height < 1 || ( long )width * height * MAX_BYTES_PER_PIXEL > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Invalid tile size: " + width + " x " + height
+					+ ", a tile must fit into one array of at most " + Integer.MAX_VALUE + " bytes at " + MAX_BYTES_PER_PIXEL + " bytes per pixel." );
+		final LazyStackOptions copy = copy();
+		copy.tileWidth = width;
+		copy.tileHeight = height;
+		copy.regionReader = reader;
+		return copy;
+	}
+
+	public int prefetch()
+	{
+		return prefetch;
+	}
+
+	public int prefetchThreads()
+	{
+		return prefetchThreads;
+	}
+
+	public long maxInFlightBytes()
+	{
+		return maxInFlightBytes;
+	}
+
+	public ExecutorService executorService()
+	{
+		return executorService;
+	}
+
+	public BoundedImageCache imageCache()
+	{
+		return imageCache;
+	}
+
+	public long cellCacheBytes()
+	{
+		return cellCacheBytes;
+	}
+
+	public HeaderProbe headerProbe()
+	{
+		return headerProbe;
+	}
+
+	public int tileWidth()
+	{
+		return tileWidth;
+	}
+
+	public int tileHeight()
+	{
+		return tileHeight;
+	}
+
+	public RegionReader regionReader()
+	{
+		return regionReader;
+	}
+}
@@ -34,9 +34,22 @@
 
 package net.imglib2.img.io;
 
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
 
 import net.imagej.ImgPlus;
 import net.imglib2.RandomAccessibleInterval;
@@ -45,6 +58,7 @@ import net.imglib2.cache.UncheckedCache;
 import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
 import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions.CacheType;
 import net.imglib2.cache.ref.SoftRefLoaderCache;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImg;
@@ -57,6 +71,7 @@ import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileLongArray;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
 import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
 import net.imglib2.img.cell.LazyCellImg;
 import net.imglib2.img.io.proxyaccess.ByteAccessProxy;
 import net.imglib2.img.io.proxyaccess.FloatAccessProxy;
@@ -71,6 +86,8 @@ import net.imglib2.type.numeric.integer.GenericByteType;
 import net.imglib2.type.numeric.integer.GenericIntType;
 import net.imglib2.type.numeric.integer.GenericLongType;
 import net.imglib2.type.numeric.integer.GenericShortType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 public class Load
@@ -85,6 +102,7 @@ public class Load
 	 * Can equally load a 3D volume by providing a list of file paths to the 2D images.
 	 *
 	 * The first image will be loaded to find out the dimensions, but it is cached.
+	 * To avoid this, see {@link LazyStackOptions#headerProbe(HeaderProbe)}.
 	 *
 	 * @param paths The ordered list of file paths, one per image to load.
 	 * @param loader The reader that turns a file path into an {@link Img}.
@@ -95,28 +113,121 @@ public class Load
 			final CacheLoader< String, Img< T > > loader
 			)
 	{
-		final UncheckedCache< Integer, Img< T > > loading_cache = new SoftRefLoaderCache< Integer, Img< T > >()
-				.withLoader( i -> loader.get( paths.get( i ) ) )
-				.unchecked();
+		return lazyStack( paths, loader, LazyStackOptions.options() );
+	}
+
+	/** Like {@link Load#lazyStack(List, CacheLoader)}, with additional options.
+	 *
+	 * With {@link LazyStackOptions#prefetch(int)}, accessing the image of one file
+	 * opens the images of the following files concurrently in the background, such that
+	 * sequential scans through a long file sequence are limited by disk bandwidth
+	 * rather than by the latency of opening each file.
+	 *
+	 * With {@link LazyStackOptions#imageCache(BoundedImageCache)}, the loaded images
+	 * are kept in a cache bounded by bytes, instead of a soft reference cache. With
+	 * {@link LazyStackOptions#cellCacheBytes(long)}, the cells are kept in a cache
+	 * with its own bound.
+	 *
+	 * With {@link LazyStackOptions#tiles(int, int, RegionReader)}, each plane is split into
+	 * tiles, that are read from the files by the {@link RegionReader} when accessed. Then only
+	 * the tiles in view are read and kept, however large the planes are. The loader is
+	 * only used to find out the dimensions, if there is no {@link HeaderProbe}. Tiles
+	 * can't be combined with {@link LazyStackOptions#prefetch(int)}.
+	 *
+	 * @param paths The ordered list of file paths, one per image to load.
+	 * @param loader The reader that turns a file path into an {@link Img}. Must be thread safe if prefetching is enabled.
+	 * @param options See {@link LazyStackOptions}.
+	 * @throws IllegalArgumentException if both tiles and prefetching are enabled.
+	 */
+	static public final < T extends NumericType< T > & NativeType< T >, A extends ArrayDataAccess< A > >
+	CachedCellImg< T, A > lazyStack(
+			final List< String > paths,
+			final CacheLoader< String, Img< T > > loader,
+			final LazyStackOptions options
+			)
+	{
+		if ( null != options.regionReader() && options.prefetch() > 0 )
+			throw new IllegalArgumentException( "Tiles are read directly from the files and can't be prefetched, disable prefetching." );
+
+		final BoundedImageCache image_cache = options.imageCache();
+		final IntFunction< Img< T > > loading_cache;
+		final IntPredicate is_loaded;
+		if ( null != image_cache )
+		{
+			loading_cache = i -> image_cache.get( paths.get( i ), loader );
+			is_loaded = i -> null != image_cache.getIfPresent( paths.get( i ), loader );
+		}
+		else
+		{
+			final UncheckedCache< Integer, Img< T > > soft_cache = new SoftRefLoaderCache< Integer, Img< T > >()
+					.withLoader( i -> loader.get( paths.get( i ) ) )
+					.unchecked();
+			loading_cache = soft_cache::get;
+			is_loaded = i -> null != soft_cache.getIfPresent( i );
+		}
+
+		final RegionReader region_reader = options.regionReader();
+		final HeaderProbe probe = null == options.headerProbe() && region_reader instanceof HeaderProbe
+				? ( HeaderProbe )region_reader
+				: options.headerProbe();
+		final ImageHeader header = probeHeader( paths.get( 0 ), probe, loading_cache );
+		final long[] dimensions = header.dimensions();
+		final long bytes_per_file = BoundedImageCache.estimateBytes( dimensions, header.type() );
 
-		final Img< T > first = loading_cache.get( 0 );
+		final FilePrefetcher prefetcher = options.prefetch() > 0
+				? new FilePrefetcher( loading_cache, is_loaded, paths.size(), bytes_per_file, options )
+				: null;
+
+		// Validate each file lazily, when it is loaded
+		final IntFunction< Img< T > > validating_cache = i -> {
+			final Img< T > img = loading_cache.apply( i );
+			header.validate( img, paths.get( i ) );
+			return img;
+		};
 		
-		final long[] dimensions_all = new long[ first.numDimensions() + 1 ];
-		first.dimensions( dimensions_all );
+		final long[] dimensions_all = new long[ dimensions.length + 1 ];
+		System.arraycopy( dimensions, 0, dimensions_all, 0, dimensions.length );
 		dimensions_all[ dimensions_all.length - 1 ] = paths.size();
 		
 		final CacheLoader< Long, Cell< A > > cache_loader;
-		final int[] dimensions_cell = new int[ first.numDimensions() + 1 ];
+		final int[] dimensions_cell = new int[ dimensions.length + 1 ];
 
-		if ( first instanceof PlanarImg )
+		if ( null != region_reader )
 		{
-			@SuppressWarnings("unchecked")
-			final int numSlices = ( ( PlanarImg< T, ? > )first ).numSlices();
+			// One cell per tile of each plane, read directly from the file
+			Arrays.fill( dimensions_cell, 1 );
+			dimensions_cell[ 0 ] = ( int )Math.min( dimensions[ 0 ], options.tileWidth() );
+			dimensions_cell[ 1 ] = ( int )Math.min( dimensions[ 1 ], options.tileHeight() );
+			final CellGrid grid = new CellGrid( dimensions_all, dimensions_cell );
 
-			dimensions_cell[ 0 ] = ( int )first.dimension( 0 );
-			dimensions_cell[ 1 ] = ( int )first.dimension( 1 );
-			dimensions_cell[ 2 ] = 1; // single unit in Z
-			dimensions_cell[ 3 ] = 1; // single unit in T
+			cache_loader = new CacheLoader< Long, Cell< A > >()
+			{
+				@SuppressWarnings( "unchecked" )
+				@Override
+				final public Cell< A > get( final Long index ) throws Exception {
+					// Tiles at the right and bottom borders may be smaller
+					final long[] min = new long[ dimensions_all.length ];
+					final int[] size = new int[ dimensions_all.length ];
+					grid.getCellDimensions( index, min, size );
+					final String path = paths.get( ( int )min[ min.length - 1 ] );
+					final Object pixels = region_reader.read( path, Arrays.copyOf( min, dimensions.length ), Arrays.copyOf( size, dimensions.length ) );
+					final VolatileArrayDataAccess< ? > access = null == pixels ? null : wrapArrayAsVolatile( pixels );
+					if ( null == access || Array.getLength( pixels ) != Intervals.numElements( size ) )
+						throw new IllegalStateException( "The region reader returned no pixels, or the wrong number of pixels, for the tile at "
+								+ Arrays.toString( min ) + " of " + path );
+					return new Cell< A >( size, min, ( A )access );
+				}
+			};
+		}
+		else if ( header.isPlanar() )
+		{
+			// One cell per plane, for any number of dimensions beyond X and Y
+			final long[] dimensions_slices = Arrays.copyOfRange( dimensions, 2, dimensions.length );
+			final int numSlices = ( int )Intervals.numElements( dimensions_slices );
+
+			Arrays.fill( dimensions_cell, 1 );
+			dimensions_cell[ 0 ] = ( int )dimensions[ 0 ];
+			dimensions_cell[ 1 ] = ( int )dimensions[ 1 ];
 
 			cache_loader = new CacheLoader< Long, Cell< A > >()
 			{
@@ -125,12 +236,17 @@ public class Load
 					final int i = index.intValue();
 					final int t = ( ( int )i ) / numSlices;
 					final int z = ( ( int )i ) % numSlices;
-					// Origin of coordinates for the Cell: 0,0,z,t
-					final long[] min = new long[ first.numDimensions() + 1 ];
-					min[ 2 ] = z;
-					min[ 3 ] = t;
+					if ( null != prefetcher )
+						prefetcher.accessed( t );
+					// Origin of coordinates for the Cell: 0,0,z,t where z may span several dimensions
+					final long[] min = new long[ dimensions.length + 1 ];
+					final long[] position = new long[ dimensions_slices.length ];
+					if ( position.length > 0 )
+						IntervalIndexer.indexToPosition( z, dimensions_slices, position );
+					System.arraycopy( position, 0, min, 2, position.length );
+					min[ min.length - 1 ] = t;
 					@SuppressWarnings("unchecked")
-					final PlanarImg< T, A > stack = ( PlanarImg< T, A > )loading_cache.get( t );
+					final PlanarImg< T, A > stack = ( PlanarImg< T, A > )validating_cache.apply( t );
 					return new Cell< A >( dimensions_cell, min, stack.getPlane( z ) );
 				}
 			};
@@ -138,7 +254,7 @@ public class Load
 		else
 		{
 			for ( int d = 0; d < dimensions_cell.length -1; ++ d )
-				dimensions_cell[ d ] = ( int )first.dimension( d );
+				dimensions_cell[ d ] = ( int )dimensions[ d ];
 
 			dimensions_cell[ dimensions_cell.length - 1 ] = 1;
 
@@ -146,23 +262,59 @@ public class Load
 			{
 				@Override
 				final public Cell< A > get( final Long index ) throws Exception {
-					final long[] min = new long[ first.numDimensions() + 1 ];
+					final long[] min = new long[ dimensions.length + 1 ];
 					min[ min.length - 1 ] = index;
-					return new Cell< A >( dimensions_cell, min, extractDataAccess( loading_cache.get( index.intValue() ) ) );
+					if ( null != prefetcher )
+						prefetcher.accessed( index.intValue() );
+					return new Cell< A >( dimensions_cell, min, extractDataAccess( validating_cache.apply( index.intValue() ) ) );
 				}
 			};
 		}
 		
+		ReadOnlyCachedCellImgOptions cell_options = ReadOnlyCachedCellImgOptions.options().volatileAccesses( true ).cellDimensions( dimensions_cell );
+		if ( options.cellCacheBytes() > 0 )
+		{
+			// NB: A budget of its own. The image cache bounds only the images,
+			// the cells may still hold the pixel arrays of evicted images.
+			final long cell_bytes = Math.max( 1, bytes_per_file * Intervals.numElements( dimensions_cell ) / Intervals.numElements( dimensions ) );
+			cell_options = cell_options.cacheType( CacheType.BOUNDED ).maxCacheSize( Math.max( 1, options.cellCacheBytes() / cell_bytes ) );
+		}
+
+		@SuppressWarnings("unchecked")
+		final T type = ( T )header.type().createVariable();
+
 		final CachedCellImg< T, A > ccimg = new ReadOnlyCachedCellImgFactory().createWithCacheLoader(
 				dimensions_all,
-				first.firstElement().createVariable(),
+				type,
 				cache_loader,
-				ReadOnlyCachedCellImgOptions.options().volatileAccesses( true ).cellDimensions( dimensions_cell ) );
+				cell_options );
 		
 		
 		return ccimg;
 	}
 
+	/** Read the header with the probe, if any, or else load the first image to find out its dimensions and type. */
+	static private final < T extends NumericType< T > & NativeType< T > > ImageHeader probeHeader(
+			final String path,
+			final HeaderProbe probe,
+			final IntFunction< Img< T > > loading_cache )
+	{
+		if ( null != probe )
+		{
+			try
+			{
+				final ImageHeader header = probe.probe( path );
+				if ( null != header )
+					return header;
+			}
+			catch ( final IOException e )
+			{
+				// Fall back to loading the image, which reports the actual problem
+			}
+		}
+		return ImageHeader.of( loading_cache.apply( 0 ) );
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	static private final < T extends NumericType< T > & NativeType< T >, A extends ArrayDataAccess< ? > > A extractDataAccess( final Img< T > img )
 	{
@@ -195,8 +347,11 @@ public class Load
 	
 	static private final VolatileArrayDataAccess< ? >  wrapAsVolatile( final ArrayDataAccess< ? > access )
 	{
-		final Object array = access.getCurrentStorageArray();
-		
+		return wrapArrayAsVolatile( access.getCurrentStorageArray() );
+	}
+
+	static private final VolatileArrayDataAccess< ? > wrapArrayAsVolatile( final Object array )
+	{
 		if ( array instanceof byte[] )
 			return new VolatileByteArray( ( byte[] )array, true );
 		else if ( array instanceof short[] )
@@ -245,22 +400,97 @@ public class Load
 	 * Return an {@link Img} representation of the ordered list of file paths,
 	 * with each file path pointing to an image that can be loaded with the {@link CacheLoader}. 
 	 * All images are expected to be of the same dimensions and of {@link NativeType}.
-	 * Eager: loads all images right away.
+	 * Eager: loads all images right away, one after the other.
 	 * 
 	 * @param paths The ordered list of file paths, one per image to load.
 	 * @param loader The reader that turns a file path into an {@link Img}.
-	 * @return
+	 * @return The images, stacked along a new last dimension.
+	 * @throws LoadException if any of the files failed to load.
 	 */
 	static public final < T extends NumericType< T > & NativeType< T > > RandomAccessibleInterval< T > stack( final List< String > paths, final CacheLoader< String, Img< T > > loader )
 	{
-		return Views.stack( paths.stream().map( path -> {
+		return stack( paths, loader, 1, null );
+	}
+
+	/**
+	 * Like {@link Load#stack(List, CacheLoader)}, but loads the images with
+	 * several threads in parallel, to make use of the I/O parallelism of the storage.
+	 * 
+	 * All files are attempted, also if some fail. The failures are reported together,
+	 * by a {@link LoadException}, before the images are stacked.
+	 * 
+	 * @param paths The ordered list of file paths, one per image to load.
+	 * @param loader The reader that turns a file path into an {@link Img}. Must be thread safe if numThreads is larger than one.
+	 * @param numThreads The number of files to load at the same time.
+	 * @param listener Notified whenever a file has been loaded or failed, may be null.
+	 * @return The images, stacked along a new last dimension.
+	 * @throws LoadException if any of the files failed to load.
+	 */
+	static public final < T extends NumericType< T > & NativeType< T > > RandomAccessibleInterval< T > stack(
+			final List< String > paths,
+			final CacheLoader< String, Img< T > > loader,
+			final int numThreads,
+			final LoadProgressListener listener )
+	{
+		final int n = paths.size();
+		final List< Img< T > > images = new ArrayList<>( Collections.nCopies( n, null ) );
+		final Exception[] errors = new Exception[ n ];
+		final AtomicInteger done = new AtomicInteger();
+
+		final IntConsumer load = i -> {
 			try {
-				return loader.get( path );
-			} catch (Exception e) {
-				e.printStackTrace();
+				final Img< T > img = loader.get( paths.get( i ) );
+				if ( null == img )
+					throw new IllegalStateException( "The loader returned null." );
+				images.set( i, img );
+			} catch ( final Exception e ) {
+				errors[ i ] = e;
+			} finally {
+				if ( null != listener )
+					listener.progress( done.incrementAndGet(), n );
 			}
-			return null;
-		} ).collect( Collectors.toList() ) );
+		};
+
+		if ( numThreads <= 1 || n <= 1 )
+		{
+			for ( int i = 0; i < n; ++i )
+				load.accept( i );
+		}
+		else
+		{
+			final ExecutorService exe = Executors.newFixedThreadPool( Math.min( numThreads, n ) );
+			try {
+				final List< Future< ? > > futures = new ArrayList<>( n );
+				for ( int i = 0; i < n; ++i )
+				{
+					final int k = i;
+					futures.add( exe.submit( () -> load.accept( k ) ) );
+				}
+				for ( final Future< ? > future : futures )
+					future.get();
+			} catch ( final InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException( e );
+			} catch ( final ExecutionException e ) {
+				// Errors, and exceptions of the listener, are not failures to load a file: rethrow them
+				final Throwable cause = e.getCause();
+				if ( cause instanceof Error )
+					throw ( Error )cause;
+				throw cause instanceof RuntimeException ? ( RuntimeException )cause : new RuntimeException( cause );
+			} finally {
+				exe.shutdownNow();
+			}
+		}
+
+		// By index, such that failures of duplicate paths are all reported
+		final Map< Integer, Exception > failures = new LinkedHashMap<>();
+		for ( int i = 0; i < n; ++i )
+			if ( null != errors[ i ] )
+				failures.put( i, errors[ i ] );
+		if ( !failures.isEmpty() )
+			throw new LoadException( paths, failures );
+
+		return Views.stack( images );
 	}
 
 	/**
@@ -0,0 +1,88 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown by {@link Load#stack} if one or more files failed to load. Holds the
+ * failures of all files, not just the first one. The causes are also
+ * available as suppressed exceptions.
+ */
+public class LoadException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	private final List< String > paths;
+
+	private final Map< Integer, Exception > failures;
+
+	/**
+	 * @param paths All paths that were to be loaded.
+	 * @param failures The exception of each file that failed to load, by the index of its path, in the order of the paths.
+	 */
+	public LoadException( final List< String > paths, final Map< Integer, Exception > failures )
+	{
+		super( message( paths, failures ) );
+		this.paths = Collections.unmodifiableList( paths );
+		this.failures = Collections.unmodifiableMap( failures );
+		for ( final Exception e : failures.values() )
+			addSuppressed( e );
+	}
+
+	/** All paths that were to be loaded, including those that loaded fine. */
+	public List< String > getPaths()
+	{
+		return paths;
+	}
+
+	/**
+	 * The exception of each file that failed to load, by the index of its path
+	 * in {@link #getPaths()}, in the order of the paths.
+	 */
+	public Map< Integer, Exception > getFailures()
+	{
+		return failures;
+	}
+
+	static private String message( final List< String > paths, final Map< Integer, Exception > failures )
+	{
+		final StringBuilder sb = new StringBuilder( "Failed to load " + failures.size() + " of " + paths.size() + " files:" );
+		for ( final Map.Entry< Integer, Exception > entry : failures.entrySet() )
+			sb.append( "\n  " ).append( entry.getKey() ).append( ": " ).append( paths.get( entry.getKey() ) ).append( ": " ).append( entry.getValue() );
+		return sb.toString();
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import ij.io.FileInfo;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.io.proxyaccess.ByteBufferAccess;
+import net.imglib2.img.io.proxyaccess.FloatBufferAccess;
+import net.imglib2.img.io.proxyaccess.ShortBufferAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.NativeTypeFactory;
+import net.imglib2.type.numeric.NumericType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+
+/**
+ * A {@link CacheLoader} that memory-maps uncompressed TIFF and raw files,
+ * instead of reading them into arrays. Opening a file only reads its header.
+ * Each plane is mapped when it is first accessed, and its pixels are read from
+ * the mapped file on access, converting the byte order if needed. The
+ * operating system's page cache does the caching.
+ * <p>
+ * The images are {@link PlanarImg}s with the same dimensions and pixel types
+ * as returned by {@link IJLoader}, but read-only. Supported are 8 bit, unsigned
+ * 16 bit and 32 bit float pixels. Other files, like compressed TIFF files, are
+ * loaded with {@link IJLoader}.
+ *
+ * @param <T>
+ */
+public class MappedLoader< T extends NumericType< T > & NativeType< T > > implements CacheLoader< String, Img< T > >
+{
+	private final FileInfo raw;
+
+	/** Memory-map TIFF files. */
+	public MappedLoader()
+	{
+		this( null );
+	}
+
+	/**
+	 * Memory-map raw files, that are all described by the given
+	 * {@link FileInfo}: {@code width}, {@code height}, {@code nImages},
+	 * {@code fileType}, {@code offset} or {@code longOffset},
+	 * {@code gapBetweenImages} and {@code intelByteOrder}.
+	 */
+	public MappedLoader( final FileInfo raw )
+	{
+		this.raw = raw;
+	}
+
+	@Override
+	public Img< T > get( final String path ) throws Exception
+	{
+		final FileInfo[] info = null != raw ? new FileInfo[] { raw } : TiffHeaderProbe.readTiffInfo( path );
+		final Img< T > img = null == info || 0 == info.length ? null : map( Paths.get( path ), info );
+		return null != img ? img : new IJLoader< T >().get( path );
+	}
+
+	/** Returns null if the file can't be memory-mapped. */
+	@SuppressWarnings( "unchecked" )
+	private Img< T > map( final Path path, final FileInfo[] info ) throws IOException
+	{
+		final RawLayout layout = RawLayout.of( info, null != raw, Files.size( path ) );
+		if ( null == layout || layout.planeBytes() > Integer.MAX_VALUE )
+			return null;
+
+		final int planeBytes = ( int )layout.planeBytes();
+		switch ( layout.bytesPerPixel )
+		{
+		case 1:
+			return ( Img< T > )createImg( new MappedPlanes<>( path, layout.offsets, planeBytes, layout.order, ByteBufferAccess::new ), layout.dimensions, new UnsignedByteType() );
+		case 2:
+			return ( Img< T > )createImg( new MappedPlanes<>( path, layout.offsets, planeBytes, layout.order, ShortBufferAccess::new ), layout.dimensions, new UnsignedShortType() );
+		default:
+			return ( Img< T > )createImg( new MappedPlanes<>( path, layout.offsets, planeBytes, layout.order, FloatBufferAccess::new ), layout.dimensions, new FloatType() );
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	static private < S extends NativeType< S >, A extends ArrayDataAccess< A > > PlanarImg< S, A > createImg( final MappedPlanes< A > planes, final long[] dimensions, final S type )
+	{
+		final PlanarImg< S, A > img = new PlanarImg<>( planes, dimensions, new Fraction() );
+		img.setLinkedType( ( ( NativeTypeFactory< S, A > )type.getNativeTypeFactory() ).createLinkedType( img ) );
+		return img;
+	}
+
+	/**
+	 * The planes of a {@link PlanarImg}, each mapped from the file when it is
+	 * first accessed.
+	 */
+	static private class MappedPlanes< A > extends AbstractList< A >
+	{
+		private final Path path;
+
+		private final long[] offsets;
+
+		private final int planeBytes;
+
+		private final ByteOrder order;
+
+		private final Function< ByteBuffer, A > createAccess;
+
+		private final AtomicReferenceArray< A > planes;
+
+		MappedPlanes( final Path path, final long[] offsets, final int planeBytes, final ByteOrder order, final Function< ByteBuffer, A > createAccess )
+		{
+			this.path = path;
+			this.offsets = offsets;
+			this.planeBytes = planeBytes;
+			this.order = order;
+			this.createAccess = createAccess;
+			this.planes = new AtomicReferenceArray<>( offsets.length );
+		}
+
+		@Override
+		public A get( final int index )
+		{
+			final A plane = planes.get( index );
+			if ( null != plane )
+				return plane;
+			// NB: Mapping the same plane twice, if threads race, is harmless.
+			planes.compareAndSet( index, null, createAccess.apply( map( index ) ) );
+			return planes.get( index );
+		}
+
+		private ByteBuffer map( final int index )
+		{
+			// NB: The mapping stays valid after the channel is closed.
+			try ( final FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+			{
+				return channel.map( FileChannel.MapMode.READ_ONLY, offsets[ index ], planeBytes ).order( order );
+			}
+			catch ( final IOException e )
+			{
+				throw new RuntimeException( "Failed to map plane " + index + " of " + path, e );
+			}
+		}
+
+		@Override
+		public int size()
+		{
+			return offsets.length;
+		}
+	}
+}
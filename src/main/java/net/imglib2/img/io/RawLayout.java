@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.nio.ByteOrder;
+
+import ij.io.FileInfo;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Where the pixels of the planes of an uncompressed TIFF or raw file are
+ * stored. Shared by {@link MappedLoader} and {@link RawRegionReader}.
+ */
+class RawLayout
+{
+	final long[] dimensions;
+
+	final int width;
+
+	final int height;
+
+	final int bytesPerPixel;
+
+	final long[] offsets;
+
+	final ByteOrder order;
+
+	private RawLayout( final long[] dimensions, final int width, final int height, final int bytesPerPixel, final long[] offsets, final ByteOrder order )
+	{
+		this.dimensions = dimensions;
+		this.width = width;
+		this.height = height;
+		this.bytesPerPixel = bytesPerPixel;
+		this.offsets = offsets;
+		this.order = order;
+	}
+
+	/**
+	 * Returns null if the pixels can't be read directly from the file.
+	 *
+	 * @param info The {@link FileInfo} of each image of a TIFF file, or the one {@link FileInfo} describing a raw file.
+	 * @param raw Whether the file is a raw file.
+	 * @param fileSize The size of the file in bytes.
+	 */
+	static RawLayout of( final FileInfo[] info, final boolean raw, final long fileSize )
+	{
+		final FileInfo fi = info[ 0 ];
+		final int bytesPerPixel = bytesPerPixel( fi );
+		if ( 0 == bytesPerPixel || !isUncompressed( fi ) || !isContiguous( fi ) )
+			return null;
+
+		final int nImages = raw ? Math.max( 1, fi.nImages ) : TiffHeaderProbe.numImages( info );
+		final long planeBytes = ( long )fi.width * fi.height * bytesPerPixel;
+
+		final long[] offsets = new long[ nImages ];
+		for ( int i = 0; i < nImages; ++i )
+		{
+			if ( info.length > 1 )
+			{
+				final FileInfo fi_i = info[ i ];
+				if ( fi_i.width != fi.width || fi_i.height != fi.height || fi_i.fileType != fi.fileType
+						|| fi_i.intelByteOrder != fi.intelByteOrder || !isUncompressed( fi_i ) || !isContiguous( fi_i ) )
+					return null;
+				offsets[ i ] = fi_i.getOffset();
+			}
+			else
+				offsets[ i ] = fi.getOffset() + i * ( planeBytes + fi.gapBetweenImages );
+		}
+		if ( offsets[ nImages - 1 ] + planeBytes > fileSize )
+			return null;
+
+		final ByteOrder order = fi.intelByteOrder ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		final long[] dimensions = raw
+				? ( nImages > 1 ? new long[] { fi.width, fi.height, nImages } : new long[] { fi.width, fi.height } )
+				: TiffHeaderProbe.dimensions( fi, nImages );
+
+		return new RawLayout( dimensions, fi.width, fi.height, bytesPerPixel, offsets, order );
+	}
+
+	long planeBytes()
+	{
+		return ( long )width * height * bytesPerPixel;
+	}
+
+	/** The pixel type, as returned by {@link IJLoader}. */
+	NativeType< ? > type()
+	{
+		switch ( bytesPerPixel )
+		{
+		case 1:
+			return new UnsignedByteType();
+		case 2:
+			return new UnsignedShortType();
+		default:
+			return new FloatType();
+		}
+	}
+
+	/** Bytes per pixel of the supported file types, 0 for other file types. */
+	static private int bytesPerPixel( final FileInfo fi )
+	{
+		switch ( fi.fileType )
+		{
+		case FileInfo.GRAY8:
+			return fi.lutSize > 0 ? 0 : 1;
+		case FileInfo.GRAY16_UNSIGNED:
+			return 2;
+		case FileInfo.GRAY32_FLOAT:
+			return 4;
+		default:
+			return 0;
+		}
+	}
+
+	static private boolean isUncompressed( final FileInfo fi )
+	{
+		return FileInfo.COMPRESSION_NONE == fi.compression || FileInfo.COMPRESSION_UNKNOWN == fi.compression;
+	}
+
+	/** True if the strips of the image, if any, are stored without gaps. */
+	static private boolean isContiguous( final FileInfo fi )
+	{
+		if ( null == fi.stripOffsets || null == fi.stripLengths )
+			return true;
+		long expected = fi.stripOffsets[ 0 ];
+		for ( int i = 0; i < fi.stripOffsets.length; ++i )
+		{
+			if ( fi.stripOffsets[ i ] != expected )
+				return false;
+			expected += fi.stripLengths[ i ];
+		}
+		return true;
+	}
+}
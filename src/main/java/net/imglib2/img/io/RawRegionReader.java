@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ij.io.FileInfo;
+/**
+ * Reads regions of uncompressed TIFF and raw files, row by row, with
+ * positional reads. Only the rows of the region are read, regardless of the
+ * size of the planes. The layout of each file is read once and kept.
+ * <p>
+ * Supported are the same files as by {@link MappedLoader}: 8 bit, unsigned 16
+ * bit and 32 bit float pixels, with contiguous strips. Also serves as the
+ * {@link HeaderProbe} of the files it reads.
+ */
+public class RawRegionReader implements RegionReader, HeaderProbe
+{
+	private final FileInfo raw;
+
+	private final ConcurrentHashMap< String, RawLayout > layouts = new ConcurrentHashMap<>();
+
+	/** Read regions of TIFF files. */
+	public RawRegionReader()
+	{
+		this( null );
+	}
+
+	/**
+	 * Read regions of raw files, that are all described by the given
+	 * {@link FileInfo}, see {@link MappedLoader#MappedLoader(FileInfo)}.
+	 */
+	public RawRegionReader( final FileInfo raw )
+	{
+		this.raw = raw;
+	}
+
+	@Override
+	public ImageHeader probe( final String path ) throws IOException
+	{
+		final RawLayout layout = layout( path );
+		return new ImageHeader( layout.dimensions.clone(), layout.type(), true );
+	}
+
+	@Override
+	public Object read( final String path, final long[] min, final int[] dimensions ) throws IOException
+	{
+		final RawLayout layout = layout( path );
+		if ( min.length != layout.dimensions.length || dimensions.length != layout.dimensions.length )
+			throw new IllegalArgumentException( "The region has " + min.length + " dimensions, the image " + layout.dimensions.length + ": " + path );
+		for ( int d = 0; d < min.length; ++d )
+			if ( min[ d ] < 0 || min[ d ] + dimensions[ d ] > layout.dimensions[ d ] )
+				throw new IllegalArgumentException( "The region " + Arrays.toString( min ) + " + " + Arrays.toString( dimensions )
+						+ " is not within the image " + Arrays.toString( layout.dimensions ) + ": " + path );
+
+		// The region may span several planes beyond X and Y
+		long numRegionSlices = 1;
+		for ( int d = 2; d < dimensions.length; ++d )
+			numRegionSlices *= dimensions[ d ];
+
+		final int width = dimensions[ 0 ];
+		final int height = dimensions[ 1 ];
+		final long rowBytes = ( long )width * layout.bytesPerPixel;
+		final long regionBytes = numRegionSlices * height * rowBytes;
+		if ( regionBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "The region " + Arrays.toString( dimensions ) + " has " + regionBytes
+					+ " bytes, more than fit into one array: " + path );
+		final ByteBuffer buffer = ByteBuffer.allocate( ( int )regionBytes ).order( layout.order );
+
+		try ( final FileChannel channel = FileChannel.open( Paths.get( path ), StandardOpenOption.READ ) )
+		{
+			for ( int s = 0; s < numRegionSlices; ++s )
+			{
+				// Index of the plane in the file, of the s-th plane of the region
+				long plane = 0;
+				int remainder = s;
+				long stride = 1;
+				for ( int d = 2; d < dimensions.length; ++d )
+				{
+					plane += ( min[ d ] + remainder % dimensions[ d ] ) * stride;
+					remainder /= dimensions[ d ];
+					stride *= layout.dimensions[ d ];
+				}
+				final long planeOffset = layout.offsets[ ( int )plane ];
+
+				for ( int y = 0; y < height; ++y )
+				{
+					final long rowOffset = planeOffset + ( ( min[ 1 ] + y ) * layout.width + min[ 0 ] ) * layout.bytesPerPixel;
+					final int rowStart = buffer.position();
+					buffer.limit( rowStart + ( int )rowBytes );
+					while ( buffer.hasRemaining() )
+						if ( channel.read( buffer, rowOffset + buffer.position() - rowStart ) < 0 )
+							throw new EOFException( "Unexpected end of file: " + path );
+				}
+			}
+		}
+		buffer.flip();
+
+		switch ( layout.bytesPerPixel )
+		{
+		case 1:
+			return buffer.array();
+		case 2:
+		{
+			final short[] pixels = new short[ buffer.remaining() / 2 ];
+			buffer.asShortBuffer().get( pixels );
+			return pixels;
+		}
+		default:
+		{
+			final float[] pixels = new float[ buffer.remaining() / 4 ];
+			buffer.asFloatBuffer().get( pixels );
+			return pixels;
+		}
+		}
+	}
+
+	private RawLayout layout( final String path ) throws IOException
+	{
+		final RawLayout known = layouts.get( path );
+		if ( null != known )
+			return known;
+		final Path file = Paths.get( path );
+		final FileInfo[] info = null != raw ? new FileInfo[] { raw } : TiffHeaderProbe.readTiffInfo( path );
+		final RawLayout layout = null == info || 0 == info.length ? null : RawLayout.of( info, null != raw, Files.size( file ) );
+		if ( null == layout )
+			throw new IOException( "Not an uncompressed 8 bit, 16 bit or 32 bit float image: " + path );
+		final RawLayout previous = layouts.putIfAbsent( path, layout );
+		return null != previous ? previous : layout;
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import ij.io.FileInfo;
+import ij.io.TiffDecoder;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Reads the dimensions and pixel type of TIFF and ImageJ TIFF files from the
+ * header, using ImageJ's {@link TiffDecoder}. The header describes the images
+ * as returned by {@link IJLoader}: a {@link net.imglib2.img.planar.PlanarImg}
+ * with the channels, slices and frames of the ImageJ hyperstack, where
+ * dimensions of size one are dropped.
+ * <p>
+ * Returns null, to load the first file instead, for files that are not TIFF
+ * files and for pixel types that ImageJ opens differently, like 48 bit RGB or
+ * 8 bit with a color lookup table.
+ */
+public class TiffHeaderProbe implements HeaderProbe
+{
+	@Override
+	public ImageHeader probe( final String path ) throws IOException
+	{
+		final FileInfo[] info = readTiffInfo( path );
+		if ( null == info || 0 == info.length )
+			return null;
+
+		final FileInfo fi = info[ 0 ];
+		final NativeType< ? > type = type( fi );
+		if ( null == type )
+			return null;
+
+		return new ImageHeader( dimensions( fi, numImages( info ) ), type, true );
+	}
+
+	/**
+	 * Reads the image file directories of the TIFF file at the given path, or
+	 * returns null if the path doesn't end with .tif or .tiff.
+	 */
+	static FileInfo[] readTiffInfo( final String path ) throws IOException
+	{
+		final String lower = path.toLowerCase();
+		if ( !lower.endsWith( ".tif" ) && !lower.endsWith( ".tiff" ) )
+			return null;
+
+		final File file = new File( path );
+		final String directory = null == file.getParent() ? "" : file.getParent() + File.separator;
+		return new TiffDecoder( directory, file.getName() ).getTiffInfo();
+	}
+
+	/** The number of images in the TIFF file. */
+	static int numImages( final FileInfo[] info )
+	{
+		return info.length > 1 ? info.length : Math.max( 1, info[ 0 ].nImages );
+	}
+
+	/**
+	 * The dimensions of the image, as {@link IJLoader} would load it: x, y,
+	 * channels, slices, frames, where dimensions of size one are dropped.
+	 */
+	static long[] dimensions( final FileInfo fi, final int nImages )
+	{
+		int channels = property( fi.description, "channels" );
+		int slices = property( fi.description, "slices" );
+		int frames = property( fi.description, "frames" );
+		if ( channels * slices * frames != nImages )
+		{
+			channels = 1;
+			slices = nImages;
+			frames = 1;
+		}
+
+		// Same order and reduction as ImagePlusImg: x, y, channels, slices, frames
+		final long[] all = { fi.width, fi.height, channels, slices, frames };
+		int n = 2;
+		for ( int d = 2; d < all.length; ++d )
+			if ( all[ d ] > 1 )
+				++n;
+		final long[] dimensions = new long[ n ];
+		n = 0;
+		for ( int d = 0; d < all.length; ++d )
+			if ( d < 2 || all[ d ] > 1 )
+				dimensions[ n++ ] = all[ d ];
+		return dimensions;
+	}
+
+	static private NativeType< ? > type( final FileInfo fi )
+	{
+		switch ( fi.fileType )
+		{
+		case FileInfo.GRAY8:
+		case FileInfo.BITMAP:
+			return fi.lutSize > 0 ? null : new UnsignedByteType();
+		case FileInfo.GRAY12_UNSIGNED:
+		case FileInfo.GRAY16_SIGNED:
+		case FileInfo.GRAY16_UNSIGNED:
+			return new UnsignedShortType();
+		case FileInfo.GRAY24_UNSIGNED:
+		case FileInfo.GRAY32_INT:
+		case FileInfo.GRAY32_UNSIGNED:
+		case FileInfo.GRAY32_FLOAT:
+		case FileInfo.GRAY64_FLOAT:
+			return new FloatType();
+		case FileInfo.RGB:
+		case FileInfo.RGB_PLANAR:
+		case FileInfo.BGR:
+		case FileInfo.ARGB:
+		case FileInfo.ABGR:
+		case FileInfo.BARG:
+			return new ARGBType();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the value of a property like "slices=5" in the description of
+	 * an ImageJ TIFF, or 1 if the property is not present.
+	 */
+	static private int property( final String description, final String key )
+	{
+		if ( null == description )
+			return 1;
+		for ( final String line : description.split( "\n" ) )
+		{
+			if ( line.startsWith( key + "=" ) )
+			{
+				try
+				{
+					return Math.max( 1, Integer.parseInt( line.substring( key.length() + 1 ).trim() ) );
+				}
+				catch ( final NumberFormatException e )
+				{
+					return 1;
+				}
+			}
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CancellableProjectorTest
+{
+	@Test
+	public void testCancelMultithreaded()
+	{
+		final Img< FloatType > source = ArrayImgs.floats( 10, 10 );
+		final Img< FloatType > target = ArrayImgs.floats( 10, 10 );
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicReference< CancellableProjector > projector = new AtomicReference<>();
+		final ExecutorService service = Executors.newSingleThreadExecutor();
+		try
+		{
+			projector.set( new MultithreadedIterableIntervalProjector2D<>( 0, 1, source, target, cancelOnFirstPixel( projector, count ), service, 1 ) );
+			projector.get().map();
+			assertTrue( projector.get().isCancelled() );
+			// NB: The row in progress is completed, the remaining rows are skipped.
+			assertEquals( 10, count.get() );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelMultithreadedAtRowStart()
+	{
+		final Img< FloatType > source = ArrayImgs.floats( 10, 10 );
+		final Img< FloatType > target = ArrayImgs.floats( 10, 10 );
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicReference< CancellableProjector > projector = new AtomicReference<>();
+		final ExecutorService service = Executors.newSingleThreadExecutor();
+		try
+		{
+			projector.set( new MultithreadedIterableIntervalProjector2D<>( 0, 1, source, target, cancelOnFirstPixel( projector, count ), service, 3 ) );
+			projector.get().map();
+			// NB: The portions start at pixels 0, 33 and 66. Each task
+			// completes the row it started in.
+			assertEquals( 10 + 7 + 4, count.get() );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelForkJoin()
+	{
+		final Img< FloatType > source = ArrayImgs.floats( 10, 10 );
+		final Img< FloatType > target = ArrayImgs.floats( 10, 10 );
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicReference< CancellableProjector > projector = new AtomicReference<>();
+		final ForkJoinPool pool = new ForkJoinPool( 1 );
+		try
+		{
+			projector.set( new ForkJoinIterableIntervalProjector2D<>( 0, 1, source, target, cancelOnFirstPixel( projector, count ), pool, 10 ) );
+			projector.get().map();
+			assertTrue( projector.get().isCancelled() );
+			assertEquals( 10, count.get() );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelForkJoinWithoutPool()
+	{
+		final Img< FloatType > source = ArrayImgs.floats( 10, 10 );
+		final Img< FloatType > target = ArrayImgs.floats( 10, 10 );
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicReference< CancellableProjector > projector = new AtomicReference<>();
+		projector.set( new ForkJoinIterableIntervalProjector2D<>( 0, 1, source, target, cancelOnFirstPixel( projector, count ), null ) );
+		projector.get().map();
+		assertEquals( 10, count.get() );
+	}
+
+	private static Converter< FloatType, FloatType > cancelOnFirstPixel( final AtomicReference< CancellableProjector > projector, final AtomicInteger count )
+	{
+		return ( i, o ) -> {
+			if ( count.getAndIncrement() == 0 )
+				projector.get().cancel();
+			o.set( i );
+		};
+	}
+}
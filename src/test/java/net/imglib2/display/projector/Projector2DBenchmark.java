@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.Cursor;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Compares {@link MultithreadedIterableIntervalProjector2D} and
+ * {@link ForkJoinIterableIntervalProjector2D} for different numbers of
+ * threads. The converter is expensive in the upper half of the image only,
+ * to simulate an uneven cost per pixel.
+ */
+@State( Scope.Benchmark )
+public class Projector2DBenchmark
+{
+
+	@Param( { "1", "2", "4", "8" } )
+	private int threads;
+
+	@Param( { "64", "1000" } )
+	private int size;
+
+	private Img< FloatType > source;
+
+	private Img< FloatType > target;
+
+	private ExecutorService fixedPool;
+
+	private ForkJoinPool forkJoinPool;
+
+	private final Converter< FloatType, FloatType > converter = ( i, o ) -> {
+		float value = i.get();
+		if ( value < 0.5f )
+			for ( int k = 0; k < 20; k++ )
+				value = ( float ) Math.sqrt( value + k );
+		o.set( value );
+	};
+
+	@Setup
+	public void setup()
+	{
+		source = ArrayImgs.floats( size, size );
+		final Cursor< FloatType > cursor = source.localizingCursor();
+		while ( cursor.hasNext() )
+			cursor.next().set( cursor.getLongPosition( 1 ) < size / 2 ? 0 : 1 );
+		target = ArrayImgs.floats( size, size );
+		fixedPool = Executors.newFixedThreadPool( threads );
+		forkJoinPool = new ForkJoinPool( threads );
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		fixedPool.shutdown();
+		forkJoinPool.shutdown();
+	}
+
+	@Benchmark
+	public void multithreaded()
+	{
+		new MultithreadedIterableIntervalProjector2D<>( 0, 1, source, target, converter, fixedPool, threads ).map();
+	}
+
+	@Benchmark
+	public void forkJoin()
+	{
+		new ForkJoinIterableIntervalProjector2D<>( 0, 1, source, target, converter, forkJoinPool ).map();
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( Projector2DBenchmark.class.getSimpleName() )
+				.forks( 0 )
+				.warmupIterations( 4 )
+				.measurementIterations( 8 )
+				.warmupTime( TimeValue.milliseconds( 100 ) )
+				.measurementTime( TimeValue.milliseconds( 100 ) )
+				.build();
+		new Runner( opt ).run();
+	}
+}
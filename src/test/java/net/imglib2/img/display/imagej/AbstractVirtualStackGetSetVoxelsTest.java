@@ -37,6 +37,8 @@ import ij.ImageStack;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -143,6 +145,55 @@ public class AbstractVirtualStackGetSetVoxelsTest
 		assertTrue( Arrays.deepEquals( expected, pixels ) );
 	}
 
+	@Test
+	public void testGetVoxelsShorts()
+	{
+		final short[][] pixels = { { 1, ( short ) 40000 }, { 3, 4 } };
+		final ImageStack stack = TestVirtualStack.shorts( 2, 1, pixels );
+		assertArrayEquals( new float[] { 1, 40000, 3, 4 }, stack.getVoxels( 0, 0, 0, 2, 1, 2, null ), 0 );
+	}
+
+	@Test
+	public void testSetVoxelsShorts()
+	{
+		final short[][] pixels = { { 0, 0 } };
+		final ImageStack stack = TestVirtualStack.shorts( 2, 1, pixels );
+		stack.setVoxels( 1, 0, 0, 1, 1, 1, new float[] { 40000 } );
+		assertArrayEquals( new short[] { 0, ( short ) 40000 }, pixels[ 0 ] );
+	}
+
+	@Test
+	public void testGetSetVoxelsFloats()
+	{
+		final float[][] pixels = { { 1.5f, 2.5f, 3.5f, 4.5f } };
+		final ImageStack stack = TestVirtualStack.floats( 2, 2, pixels );
+		assertArrayEquals( new float[] { 2.5f, 4.5f }, stack.getVoxels( 1, 0, 0, 1, 2, 1, null ), 0 );
+		stack.setVoxels( 0, 1, 0, 2, 1, 1, new float[] { 7.25f, 8.25f } );
+		assertArrayEquals( new float[] { 1.5f, 2.5f, 7.25f, 8.25f }, pixels[ 0 ], 0 );
+	}
+
+	@Test
+	public void testGetSetVoxelsMultiThreaded()
+	{
+		final int[][] pixels = { range( 0, 99 ), range( 100, 199 ), range( 200, 299 ), range( 300, 399 ) };
+		final TestVirtualStack stack = TestVirtualStack.ints( 10, 10, pixels );
+		final ExecutorService service = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			stack.setVoxelsExecutorService( service );
+			final float[] voxels = stack.getVoxels( 1, 1, 0, 2, 2, 4, null );
+			assertArrayEquals( new float[] { 11, 12, 21, 22, 111, 112, 121, 122, 211, 212, 221, 222, 311, 312, 321, 322 }, voxels, 0 );
+			stack.setVoxels( 0, 0, 1, 1, 1, 3, new float[] { 7, 8, 9 } );
+			assertEquals( 7, pixels[ 1 ][ 0 ] );
+			assertEquals( 8, pixels[ 2 ][ 0 ] );
+			assertEquals( 9, pixels[ 3 ][ 0 ] );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
 	@Test( expected = IndexOutOfBoundsException.class )
 	public void testOutOfBounds()
 	{
@@ -166,6 +217,16 @@ public class AbstractVirtualStackGetSetVoxelsTest
 			return new TestVirtualStack( width, height, pixels, 8 );
 		}
 
+		public static TestVirtualStack shorts( int width, int height, short[][] pixels )
+		{
+			return new TestVirtualStack( width, height, pixels, 16 );
+		}
+
+		public static TestVirtualStack floats( int width, int height, float[][] pixels )
+		{
+			return new TestVirtualStack( width, height, pixels, 32 );
+		}
+
 		public static TestVirtualStack ints( int width, int height, int[][] pixels )
 		{
 			return new TestVirtualStack( width, height, pixels, 24 );
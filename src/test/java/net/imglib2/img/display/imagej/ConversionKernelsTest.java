@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import org.junit.Test;
+
+/**
+ * Tests that the bulk conversion of {@link ConversionKernels} gives the same
+ * results as the conversion pixel by pixel.
+ */
+public class ConversionKernelsTest
+{
+
+	private static final double[] DOUBLES = { Double.NaN, -Double.MAX_VALUE, -1e40, -1, -0.5, -0.0, 0, 0.49, 0.5, 1.5, 254.5, 255.4, 255.5,
+			65534.4, 65534.5, 65535.5, 1e10, 1e40, Double.MAX_VALUE, Double.POSITIVE_INFINITY };
+
+	private static final long[] LONGS = { Long.MIN_VALUE, Integer.MIN_VALUE, Short.MIN_VALUE, -1, 0, 1, 254, 255, 256,
+			Short.MAX_VALUE, 65535, 65536, Integer.MAX_VALUE, ( 1L << 53 ) + 1, Long.MAX_VALUE };
+
+	private static final List< Function< RandomAccessibleInterval< ? extends RealType< ? > >, ImageJVirtualStack< ? > > > WRAPPERS =
+			Arrays.asList( ImageJVirtualStackUnsignedByte::wrap, ImageJVirtualStackUnsignedShort::wrap, ImageJVirtualStackFloat::wrap );
+
+	@Test
+	public void testDoubles()
+	{
+		testAllBitDepths( ArrayImgs.doubles( DOUBLES, DOUBLES.length, 1 ) );
+	}
+
+	@Test
+	public void testFloats()
+	{
+		final float[] floats = new float[ DOUBLES.length ];
+		for ( int i = 0; i < floats.length; i++ )
+			floats[ i ] = ( float ) DOUBLES[ i ];
+		testAllBitDepths( ArrayImgs.floats( floats, floats.length, 1 ) );
+	}
+
+	@Test
+	public void testInts()
+	{
+		final int[] ints = new int[ LONGS.length ];
+		for ( int i = 0; i < ints.length; i++ )
+			ints[ i ] = ( int ) Math.max( Integer.MIN_VALUE, Math.min( Integer.MAX_VALUE, LONGS[ i ] ) );
+		testAllBitDepths( ArrayImgs.ints( ints, ints.length, 1 ) );
+	}
+
+	@Test
+	public void testLongs()
+	{
+		testAllBitDepths( ArrayImgs.longs( LONGS, LONGS.length, 1 ) );
+	}
+
+	@Test
+	public void testShorts()
+	{
+		final short[] shorts = new short[ LONGS.length ];
+		for ( int i = 0; i < shorts.length; i++ )
+			shorts[ i ] = ( short ) Math.max( Short.MIN_VALUE, Math.min( Short.MAX_VALUE, LONGS[ i ] ) );
+		testAllBitDepths( ArrayImgs.shorts( shorts, shorts.length, 1 ) );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		final Img< ? extends RealType< ? > > img = PlanarImgs.doubles( 3, 2, 4 );
+		double value = -300;
+		for ( final RealType< ? > pixel : img )
+			pixel.setReal( value += 37.7 );
+		testAllBitDepths( img );
+	}
+
+	@Test
+	public void testConvertBackDoubles()
+	{
+		testConvertBack( () -> ArrayImgs.doubles( 4, 2, 2 ) );
+	}
+
+	@Test
+	public void testConvertBackFloats()
+	{
+		testConvertBack( () -> ArrayImgs.floats( 4, 2, 2 ) );
+	}
+
+	@Test
+	public void testConvertBackPlanarImg()
+	{
+		testConvertBack( () -> PlanarImgs.doubles( 4, 2, 2 ) );
+	}
+
+	private void testConvertBack( final Supplier< Img< ? extends RealType< ? > > > factory )
+	{
+		final Object[] pixels = {
+				new byte[] { 0, 1, 42, 127, ( byte ) 128, ( byte ) 200, ( byte ) 255, 7 },
+				new short[] { 0, 1, 255, 256, Short.MAX_VALUE, ( short ) 40000, ( short ) 65535, 7 },
+				new float[] { Float.NaN, Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -1.5f, 0, 0.25f, 1e30f, Float.POSITIVE_INFINITY } };
+		for ( int i = 0; i < WRAPPERS.size(); i++ )
+		{
+			final Img< ? extends RealType< ? > > expectedImage = factory.get();
+			final Img< ? extends RealType< ? > > actualImage = factory.get();
+			final ImageJVirtualStack< ? > expected = WRAPPERS.get( i ).apply( Views.interval( expectedImage, expectedImage ) );
+			final ImageJVirtualStack< ? > actual = WRAPPERS.get( i ).apply( actualImage );
+			expected.setWritable( true );
+			actual.setWritable( true );
+			expected.setPixels( pixels[ i ], 2 );
+			actual.setPixels( pixels[ i ], 2 );
+			// NB: Infinite float values are clamped.
+			if ( !( pixels[ i ] instanceof float[] ) )
+				assertPixelsEqual( pixels[ i ], expected.getPixels( 2 ) );
+			assertPixelsEqual( expected.getPixels( 2 ), actual.getPixels( 2 ) );
+			assertPixelsEqual( expected.getPixels( 1 ), actual.getPixels( 1 ) );
+		}
+	}
+
+	private void testAllBitDepths( final RandomAccessibleInterval< ? extends RealType< ? > > image )
+	{
+		for ( final Function< RandomAccessibleInterval< ? extends RealType< ? > >, ImageJVirtualStack< ? > > wrapper : WRAPPERS )
+		{
+			final ImageJVirtualStack< ? > expected = wrapper.apply( Views.interval( image, image ) );
+			final ImageJVirtualStack< ? > actual = wrapper.apply( image );
+			for ( int n = 1; n <= actual.getSize(); n++ )
+				assertPixelsEqual( expected.getPixels( n ), actual.getPixels( n ) );
+		}
+	}
+
+	private static void assertPixelsEqual( final Object expected, final Object actual )
+	{
+		if ( expected instanceof byte[] )
+			assertArrayEquals( ( byte[] ) expected, ( byte[] ) actual );
+		else if ( expected instanceof short[] )
+			assertArrayEquals( ( short[] ) expected, ( short[] ) actual );
+		else
+			assertArrayEquals( ( float[] ) expected, ( float[] ) actual, 0 );
+	}
+}
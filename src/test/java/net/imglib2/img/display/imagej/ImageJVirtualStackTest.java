@@ -36,14 +36,25 @@ package net.imglib2.img.display.imagej;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.converter.Converters;
+import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.projector.CancellableProjector;
+import net.imglib2.img.basictypeaccess.FloatAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
 import net.imglib2.test.RandomImgs;
 import net.imglib2.type.Type;
 import net.imglib2.type.numeric.ARGBType;
@@ -51,6 +62,21 @@ import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+import net.imglib2.view.Views;
+import java.awt.Rectangle;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -252,4 +278,540 @@ public class ImageJVirtualStackTest
 		final ImageProcessor p2 = stack.getProcessor( 2 );
 		assertNotSame( p1, p2 );
 	}
+
+	@Test
+	public void testPlaneCache()
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( new byte[] { 1, 2 }, 1, 1, 2 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( img );
+		stack.setPlaneCacheSize( 1 );
+		assertArrayEquals( new byte[] { 1 }, ( byte[] ) stack.getPixels( 1 ) );
+		img.firstElement().set( 42 );
+		// NB: the cached plane is returned, the change of the image is not visible
+		assertArrayEquals( new byte[] { 1 }, ( byte[] ) stack.getPixels( 1 ) );
+		stack.invalidatePlaneCache();
+		assertArrayEquals( new byte[] { 42 }, ( byte[] ) stack.getPixels( 1 ) );
+	}
+
+	@Test
+	public void testPlaneCacheReturnsCopy()
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( new byte[] { 1 }, 1, 1 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( img );
+		stack.setPlaneCacheSize( 1000 );
+		final byte[] pixels = ( byte[] ) stack.getPixels( 1 );
+		pixels[ 0 ] = 7;
+		assertArrayEquals( new byte[] { 1 }, ( byte[] ) stack.getPixels( 1 ) );
+	}
+
+	@Test
+	public void testPlaneCacheInvalidatedBySetPixels()
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( new byte[] { 1 }, 1, 1 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( img );
+		stack.setPlaneCacheSize( 1000 );
+		stack.setWritable( true );
+		stack.getPixels( 1 );
+		stack.setPixels( new byte[] { 42 }, 1 );
+		assertArrayEquals( new byte[] { 42 }, ( byte[] ) stack.getPixels( 1 ) );
+		stack.setVoxels( 0, 0, 0, 1, 1, 1, new float[] { 13 } );
+		assertArrayEquals( new byte[] { 13 }, ( byte[] ) stack.getPixels( 1 ) );
+	}
+
+	@Test
+	public void testWriteDuringBackgroundRender() throws InterruptedException
+	{
+		final Img< FloatType > img = ArrayImgs.floats( new float[] { 1, 2, 3, 4 }, 2, 2 );
+		final Thread caller = Thread.currentThread();
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		// NB: The background render reads the first pixel, then waits.
+		final RandomAccessibleInterval< FloatType > blocking = Converters.convert( ( RandomAccessibleInterval< FloatType > ) img, sampler -> new FloatType( new FloatAccess()
+		{
+			@Override
+			public float getValue( final int index )
+			{
+				final float value = sampler.get().get();
+				if ( Thread.currentThread() != caller && started.getCount() > 0 )
+				{
+					started.countDown();
+					awaitUninterruptibly( release );
+				}
+				return value;
+			}
+
+			@Override
+			public void setValue( final int index, final float value )
+			{
+				sampler.get().set( value );
+			}
+		} ) );
+		final ImageJVirtualStackFloat stack = ImageJVirtualStackFloat.wrap( blocking );
+		final ExecutorService service = Executors.newFixedThreadPool( 2 );
+		try
+		{
+			stack.setExecutorService( service );
+			stack.setWritable( true );
+			stack.setProgressiveRendering( 2 );
+			stack.getProcessor( 1 );
+			assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+			stack.setPixels( new float[] { 9, 9, 9, 9 }, 1 );
+			release.countDown();
+		}
+		finally
+		{
+			service.shutdown();
+		}
+		assertTrue( service.awaitTermination( 10, TimeUnit.SECONDS ) );
+		assertArrayEquals( new float[] { 9, 9, 9, 9 }, ( float[] ) stack.getPixels( 1 ), 0 );
+	}
+
+	private static void awaitUninterruptibly( final CountDownLatch latch )
+	{
+		try
+		{
+			latch.await( 10, TimeUnit.SECONDS );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testPlaneCacheEviction()
+	{
+		final PlaneCache cache = new PlaneCache( 8 );
+		cache.put( 0, new short[ 2 ] );
+		cache.put( 1, new short[ 2 ] );
+		cache.get( 0 );
+		cache.put( 2, new short[ 2 ] );
+		assertTrue( cache.get( 0 ) != null );
+		assertTrue( cache.get( 1 ) == null );
+		assertTrue( cache.get( 2 ) != null );
+		assertEquals( 8, cache.getBytes() );
+	}
+
+	@Test
+	public void testPrefetch()
+	{
+		final Img< UnsignedByteType > img = RandomImgs.randomImage( new UnsignedByteType(), 10, 10, 2, 3 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( img );
+		final ExecutorService service = Executors.newFixedThreadPool( 2 );
+		try
+		{
+			stack.setExecutorService( service );
+			stack.setPrefetchRadius( 1 );
+			final ImageStack expected = ImageJVirtualStackUnsignedByte.wrap( img );
+			for ( final int n : new int[] { 3, 4, 1, 6, 2, 5, 3 } )
+				assertArrayEquals( ( byte[] ) expected.getPixels( n ), ( byte[] ) stack.getPixels( n ) );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testGetPixelsZeroCopy()
+	{
+		final PlanarImg< FloatType, ? > img = PlanarImgs.floats( 2, 2, 3 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackFloat.wrap( img );
+		stack.setWritable( true );
+		assertSame( img.getPlane( 1 ).getCurrentStorageArray(), stack.getPixels( 2 ) );
+	}
+
+	@Test
+	public void testGetPixelsCopiesIfNotWritable()
+	{
+		final PlanarImg< FloatType, ? > img = PlanarImgs.floats( 2, 2, 3 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackFloat.wrap( img );
+		assertNotSame( img.getPlane( 1 ).getCurrentStorageArray(), stack.getPixels( 2 ) );
+	}
+
+	@Test
+	public void testGetPixelsArrayImgPlane()
+	{
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( new short[] { 1, 2, 3, 4, 5, 6 }, 1, 2, 3 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedShort.wrap( img );
+		stack.setWritable( true );
+		assertArrayEquals( new short[] { 3, 4 }, ( short[] ) stack.getPixels( 2 ) );
+	}
+
+	@Test
+	public void testWriteBackBuffer()
+	{
+		final byte[] pixels = new byte[ 3 ];
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( ArrayImgs.unsignedBytes( pixels, 1, 1, 3 ) );
+		stack.setWritable( true );
+		stack.setWriteBackBufferSize( 10 );
+		stack.setPixels( new byte[] { 42 }, 2 );
+		assertTrue( stack.hasUnsavedChanges() );
+		assertEquals( 0, pixels[ 1 ] );
+		assertArrayEquals( new byte[] { 42 }, ( byte[] ) stack.getPixels( 2 ) );
+		assertEquals( 42, stack.getVoxels( 0, 0, 1, 1, 1, 1, null )[ 0 ], 0 );
+		assertEquals( 2, stack.saveChanges( 2 ) );
+		assertFalse( stack.hasUnsavedChanges() );
+		assertEquals( 42, pixels[ 1 ] );
+	}
+
+	@Test
+	public void testWriteBackBufferLimit()
+	{
+		final byte[] pixels = new byte[ 3 ];
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( ArrayImgs.unsignedBytes( pixels, 1, 1, 3 ) );
+		stack.setWritable( true );
+		stack.setWriteBackBufferSize( 2 );
+		stack.setPixels( new byte[] { 1 }, 1 );
+		assertArrayEquals( new byte[] { 0, 0, 0 }, pixels );
+		stack.setPixels( new byte[] { 2 }, 2 );
+		assertFalse( stack.hasUnsavedChanges() );
+		assertArrayEquals( new byte[] { 1, 2, 0 }, pixels );
+	}
+
+	@Test
+	public void testSaveChangesNotWritable()
+	{
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( ArrayImgs.unsignedBytes( 1, 1 ) );
+		assertEquals( -1, stack.saveChanges( 1 ) );
+	}
+
+	@Test
+	public void testDuplicateMultiThreaded()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.randomImage( new UnsignedShortType(), 10, 10, 7 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedShort.wrap( img );
+		final ExecutorService service = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			stack.setExecutorService( service );
+			final ImageStack duplicate = stack.duplicate();
+			final ImageStack cropped = stack.crop( 2, 3, 1, 4, 5, 6 );
+			assertEquals( 7, duplicate.getSize() );
+			assertEquals( 6, cropped.getSize() );
+			for ( int n = 1; n <= 7; n++ )
+				assertArrayEquals( ( short[] ) stack.getPixels( n ), ( short[] ) duplicate.getPixels( n ) );
+			for ( int n = 1; n <= 6; n++ )
+			{
+				final ImageProcessor expected = stack.getProcessor( n + 1 );
+				expected.setRoi( 2, 3, 4, 5 );
+				assertArrayEquals( ( short[] ) expected.crop().getPixels(), ( short[] ) cropped.getPixels( n ) );
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testConvertToFloatIsVirtual()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.randomImage( new UnsignedShortType(), 10, 10, 3 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedShort.wrap( img );
+		final ImageStack result = stack.convertToFloat();
+		final ImageStack expected = ImageStackUtils.convertToFloat( stack );
+		assertTrue( result instanceof ImageJVirtualStackFloat );
+		assertEquals( 3, result.getSize() );
+		for ( int n = 1; n <= 3; n++ )
+		{
+			assertArrayEquals( ( float[] ) expected.getPixels( n ), ( float[] ) result.getPixels( n ), 0 );
+			assertEquals( expected.getProcessor( n ).getMax(), result.getProcessor( n ).getMax(), 0 );
+		}
+	}
+
+	@Test
+	public void testConvertToFloatAfterDeleteSlice()
+	{
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( ArrayImgs.unsignedBytes( new byte[] { 1, 2, 3 }, 1, 1, 3 ) );
+		stack.deleteSlice( 1 );
+		final ImageStack result = stack.convertToFloat();
+		assertEquals( ImageStack.class, result.getClass() );
+		assertArrayEquals( new float[] { 2 }, ( float[] ) result.getPixels( 1 ), 0 );
+		assertArrayEquals( new float[] { 3 }, ( float[] ) result.getPixels( 2 ), 0 );
+	}
+
+	@Test
+	public void testBufferPool()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( new float[] { 1, 2 }, 1, 1, 2 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( img );
+		stack.setBufferPoolSize( 1 );
+		final Object first = stack.getPixels( 1 );
+		stack.releasePixels( first );
+		final Object second = stack.getPixels( 2 );
+		assertSame( first, second );
+		assertArrayEquals( new byte[] { 2 }, ( byte[] ) second );
+		// NB: Arrays that are not released stay private to the caller.
+		assertNotSame( second, stack.getPixels( 2 ) );
+	}
+
+	@Test
+	public void testBufferPoolIgnoresBackingArrays()
+	{
+		final byte[] pixels = { 1, 2 };
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( ArrayImgs.unsignedBytes( pixels, 2, 1 ) );
+		stack.setBufferPoolSize( 1 );
+		stack.setWritable( true );
+		stack.releasePixels( stack.getPixels( 1 ) );
+		stack.setWritable( false );
+		final Object copy = stack.getPixels( 1 );
+		assertNotSame( pixels, copy );
+		assertArrayEquals( pixels, ( byte[] ) copy );
+	}
+
+	@Test
+	public void testReleasePixelsDoesNotAccessPlanes()
+	{
+		final AtomicInteger accesses = new AtomicInteger();
+		final List< ByteArray > arrays = Arrays.asList( new ByteArray( 2 ), new ByteArray( 2 ), new ByteArray( 2 ) );
+		final List< ByteArray > planes = new AbstractList< ByteArray >()
+		{
+			@Override
+			public ByteArray get( final int index )
+			{
+				accesses.incrementAndGet();
+				return arrays.get( index );
+			}
+
+			@Override
+			public int size()
+			{
+				return arrays.size();
+			}
+		};
+		final PlanarImg< UnsignedByteType, ByteArray > img = new PlanarImg<>( planes, new long[] { 2, 1, 3 }, new Fraction() );
+		img.setLinkedType( new UnsignedByteType( img ) );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( img );
+		stack.setBufferPoolSize( 1 );
+		stack.setWritable( true );
+		final Object backing = stack.getPixels( 2 );
+		assertSame( arrays.get( 1 ).getCurrentStorageArray(), backing );
+		accesses.set( 0 );
+		stack.releasePixels( backing );
+		stack.releasePixels( new byte[ 2 ] );
+		assertEquals( 0, accesses.get() );
+		// NB: The backing array is not reused as a buffer.
+		stack.setWritable( false );
+		assertNotSame( backing, stack.getPixels( 1 ) );
+		assertNotSame( backing, stack.getPixels( 3 ) );
+	}
+
+	@Test
+	public void testForkJoinPool()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.randomImage( new UnsignedShortType(), 300, 200, 3 );
+		final ImageJVirtualStack< ? > expected = ImageJVirtualStackFloat.wrap( img );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackFloat.wrap( img );
+		final ForkJoinPool pool = new ForkJoinPool( 3 );
+		try
+		{
+			stack.setExecutorService( pool );
+			for ( int n = 1; n <= 3; n++ )
+				assertArrayEquals( ( float[] ) expected.getPixels( n ), ( float[] ) stack.getPixels( n ), 0 );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testRoiRendering()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( new float[] { 1, 2, 3, 4, 5, 6 }, 3, 2 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedByte.wrap( img );
+		stack.setRoi( new Rectangle( 1, 0, 5, 1 ) );
+		stack.setRoiRendering( true );
+		final ImageProcessor processor = stack.getProcessor( 1 );
+		assertEquals( new Rectangle( 1, 0, 2, 1 ), processor.getRoi() );
+		assertArrayEquals( new byte[] { 0, 2, 3, 0, 0, 0 }, ( byte[] ) processor.getPixels() );
+		assertArrayEquals( new byte[] { 1, 2, 3, 4, 5, 6 }, ( byte[] ) stack.getPixels( 1 ) );
+	}
+
+	@Test
+	public void testResetMinMax()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( new float[] { 1, 5, -2, 3 }, 2, 1, 2 );
+		final ImageJVirtualStackFloat stack = ImageJVirtualStackFloat.wrap( Views.interval( img, img ) );
+		assertFalse( stack.resetMinMaxOfRenderedPlanes() );
+		stack.getPixels( 2 );
+		assertTrue( stack.resetMinMaxOfRenderedPlanes() );
+		assertEquals( -2, stack.getProcessor( 1 ).getMin(), 0 );
+		assertEquals( 3, stack.getProcessor( 1 ).getMax(), 0 );
+		stack.resetMinMax();
+		assertEquals( 5, stack.getProcessor( 1 ).getMax(), 0 );
+		stack.setWritable( true );
+		stack.setPixels( new float[] { 7, 0 }, 1 );
+		stack.resetMinMax();
+		assertEquals( -2, stack.getProcessor( 1 ).getMin(), 0 );
+		assertEquals( 7, stack.getProcessor( 1 ).getMax(), 0 );
+	}
+
+	@Test
+	public void testResetMinMaxAfterInPlaceEdit()
+	{
+		final PlanarImg< FloatType, ? > img = PlanarImgs.floats( 2, 1, 2 );
+		final ImageJVirtualStackFloat stack = ImageJVirtualStackFloat.wrap( img );
+		stack.setWritable( true );
+		stack.resetMinMax();
+		assertEquals( 0, stack.getProcessor( 1 ).getMax(), 0 );
+		// NB: The processor shares the backing array, no setPixels is called.
+		stack.getProcessor( 1 ).setf( 0, 42 );
+		stack.resetMinMax();
+		assertEquals( 42, stack.getProcessor( 1 ).getMax(), 0 );
+	}
+
+	@Test
+	public void testSetMinMaxFromPercentiles()
+	{
+		final short[] pixels = new short[ 2000 ];
+		for ( int i = 0; i < pixels.length; i++ )
+			pixels[ i ] = ( short ) ( 1000 + i % 1000 );
+		final ImageJVirtualStackUnsignedShort stack = ImageJVirtualStackUnsignedShort.wrap( ArrayImgs.unsignedShorts( pixels, 100, 10, 2 ) );
+		stack.setMinMaxFromPercentiles();
+		final ImageProcessor processor = stack.getProcessor( 1 );
+		assertEquals( 1001, processor.getMin(), 0 );
+		assertEquals( 1998, processor.getMax(), 0 );
+	}
+
+	@Test
+	public void testDuplicateReadOnlyStackWithoutCopy()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( new float[] { 1, 2, 3, 4, 5, 6, 7, 8 }, 2, 2, 2 );
+		final AtomicInteger released = new AtomicInteger();
+		final ImageJVirtualStackFloat stack = new ImageJVirtualStackFloat( img, ( i, o ) -> o.set( i ), null )
+		{
+			@Override
+			public void releasePixels( final Object pixels )
+			{
+				released.incrementAndGet();
+				super.releasePixels( pixels );
+			}
+		};
+		final ImageStack duplicate = stack.duplicate();
+		assertArrayEquals( new float[] { 1, 2, 3, 4 }, ( float[] ) duplicate.getPixels( 1 ), 0 );
+		assertArrayEquals( new float[] { 5, 6, 7, 8 }, ( float[] ) duplicate.getPixels( 2 ), 0 );
+		// NB: The read-only stack returns new arrays, that are kept as they are.
+		assertEquals( 0, released.get() );
+		// A cropped plane is copied, and the array is handed back.
+		stack.crop( 0, 0, 0, 1, 2, 1 );
+		assertEquals( 1, released.get() );
+	}
+
+	@Test
+	public void testAutoDisplayRange()
+	{
+		final short[] pixels = new short[ 2000 ];
+		for ( int i = 0; i < pixels.length; i++ )
+			pixels[ i ] = ( short ) ( 1000 + i % 1000 );
+		ImageJVirtualStackUnsignedShort.setAutoDisplayRange( true );
+		try
+		{
+			final ImageJVirtualStackUnsignedShort stack = ImageJVirtualStackUnsignedShort.wrap( ArrayImgs.unsignedShorts( pixels, 100, 10, 2 ) );
+			final ImageProcessor processor = stack.getProcessor( 1 );
+			assertEquals( 1001, processor.getMin(), 0 );
+			assertEquals( 1998, processor.getMax(), 0 );
+		}
+		finally
+		{
+			ImageJVirtualStackUnsignedShort.setAutoDisplayRange( false );
+		}
+		final ImageJVirtualStackUnsignedShort stack = ImageJVirtualStackUnsignedShort.wrap( ArrayImgs.unsignedShorts( pixels, 100, 10, 2 ) );
+		assertEquals( 65535, stack.getProcessor( 1 ).getMax(), 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testSetMinMaxFromInvalidPercentiles()
+	{
+		final ImageJVirtualStackUnsignedShort stack = ImageJVirtualStackUnsignedShort.wrap( ArrayImgs.unsignedShorts( 10, 10 ) );
+		stack.setMinMaxFromPercentiles( 99.9, 0.1, 16, 1000 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testSetMinMaxFromPercentilesWithoutSamples()
+	{
+		final ImageJVirtualStackUnsignedShort stack = ImageJVirtualStackUnsignedShort.wrap( ArrayImgs.unsignedShorts( 10, 10 ) );
+		stack.setMinMaxFromPercentiles( 0.1, 99.9, 16, 0 );
+	}
+
+	@Test
+	public void testProgressiveRendering() throws InterruptedException
+	{
+		final Img< FloatType > img = ArrayImgs.floats( new float[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, 3, 3 );
+		final ImageJVirtualStackFloat stack = ImageJVirtualStackFloat.wrap( Views.interval( img, img ) );
+		final ExecutorService service = Executors.newSingleThreadExecutor();
+		try
+		{
+			final CountDownLatch refined = new CountDownLatch( 1 );
+			stack.setExecutorService( service );
+			stack.setProgressiveRendering( 2 );
+			stack.setRefinedListener( n -> refined.countDown() );
+			final float[] preview = ( float[] ) stack.getProcessor( 1 ).getPixels();
+			assertArrayEquals( new float[] { 1, 1, 3, 1, 1, 3, 7, 7, 9 }, preview, 0 );
+			assertTrue( refined.await( 10, TimeUnit.SECONDS ) );
+			assertArrayEquals( new float[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, ( float[] ) stack.getProcessor( 1 ).getPixels(), 0 );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelSupersededRenders() throws Exception
+	{
+		final float[] values = new float[ 32 ];
+		for ( int i = 0; i < values.length; i++ )
+			values[ i ] = i + 1;
+		final Img< FloatType > img = ArrayImgs.floats( values, 4, 4, 2 );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		// NB: The first render of the first plane waits at its first pixel.
+		final Converter< FloatType, FloatType > converter = ( i, o ) -> {
+			if ( i.get() == 1 && started.getCount() > 0 )
+			{
+				started.countDown();
+				awaitUninterruptibly( release );
+			}
+			o.set( i );
+		};
+		final ExecutorService service = Executors.newFixedThreadPool( 2 );
+		final ExecutorService callers = Executors.newSingleThreadExecutor();
+		try
+		{
+			final List< AbstractProjector2D > projectors = new CopyOnWriteArrayList<>();
+			final ImageJVirtualStackFloat stack = new ImageJVirtualStackFloat( img, converter, service )
+			{
+				@Override
+				AbstractProjector2D createProjector( final int index, final IterableInterval< FloatType > target, final Converter< FloatType, FloatType > converter )
+				{
+					final AbstractProjector2D projector = super.createProjector( index, target, converter );
+					if ( index == 0 )
+						projectors.add( projector );
+					return projector;
+				}
+			};
+			stack.setCancelSupersededRenders( true );
+			final Future< Object > first = callers.submit( () -> stack.getProcessor( 1 ).getPixels() );
+			assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+			assertArrayEquals( Arrays.copyOfRange( values, 16, 32 ), ( float[] ) stack.getProcessor( 2 ).getPixels(), 0 );
+			assertTrue( ( ( CancellableProjector ) projectors.get( 0 ) ).isCancelled() );
+
+			// NB: The superseded call returns a coarse preview, neither the
+			// incomplete plane, nor a second complete render.
+			release.countDown();
+			final float[] preview = new float[ 16 ];
+			Arrays.fill( preview, 1 );
+			assertArrayEquals( preview, ( float[] ) first.get( 10, TimeUnit.SECONDS ), 0 );
+			assertEquals( 1, projectors.size() );
+		}
+		finally
+		{
+			release.countDown();
+			callers.shutdown();
+			service.shutdown();
+		}
+	}
 }
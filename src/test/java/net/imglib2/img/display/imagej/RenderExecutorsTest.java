@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import net.imglib2.img.Img;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+import org.junit.After;
+import org.junit.Test;
+
+public class RenderExecutorsTest
+{
+
+	@After
+	public void resetPolicy()
+	{
+		RenderExecutors.setPolicy( RenderExecutors.Policy.SHARED_POOL );
+	}
+
+	@Test
+	public void testSequential()
+	{
+		RenderExecutors.setPolicy( RenderExecutors.Policy.SEQUENTIAL );
+		assertNull( RenderExecutors.getDefault() );
+	}
+
+	@Test
+	public void testSharedPool()
+	{
+		RenderExecutors.setPolicy( RenderExecutors.Policy.SHARED_POOL );
+		assertNotNull( RenderExecutors.getDefault() );
+		assertSame( RenderExecutors.getDefault(), RenderExecutors.getDefault() );
+	}
+
+	@Test
+	public void testVirtualThreadsFallBack()
+	{
+		RenderExecutors.setPolicy( RenderExecutors.Policy.VIRTUAL_THREADS );
+		assertNotNull( RenderExecutors.getDefault() );
+	}
+
+	@Test
+	public void testStackUsesDefault()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.randomImage( new UnsignedShortType(), 100, 100, 3 );
+		final ImageJVirtualStack< ? > stack = ImageJVirtualStackUnsignedShort.wrap( Views.interval( img, img ) );
+		assertSame( RenderExecutors.getDefault(), stack.getExecutorService() );
+		RenderExecutors.setPolicy( RenderExecutors.Policy.SEQUENTIAL );
+		final short[] expected = ( short[] ) stack.getPixels( 2 );
+		RenderExecutors.setPolicy( RenderExecutors.Policy.SHARED_POOL );
+		assertArrayEquals( expected, ( short[] ) stack.getPixels( 2 ) );
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.display.imagej;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+import org.junit.Test;
+
+public class RenderMetricsTest
+{
+
+	@Test
+	public void testBucket()
+	{
+		assertEquals( 0, RenderMetrics.bucket( 999 ) );
+		assertEquals( 1, RenderMetrics.bucket( 1000 ) );
+		assertEquals( 2, RenderMetrics.bucket( 2000 ) );
+		assertEquals( 2, RenderMetrics.bucket( 3999 ) );
+		assertEquals( 3, RenderMetrics.bucket( 4000 ) );
+		assertEquals( RenderMetrics.HISTOGRAM_BUCKETS - 1, RenderMetrics.bucket( Long.MAX_VALUE ) );
+	}
+
+	@Test
+	public void testRenderedAndServed()
+	{
+		final Img< DoubleType > img = ArrayImgs.doubles( new double[] { 1, 2, 3, 4 }, 2, 1, 2 );
+		final ImageJVirtualStackFloat stack = ImageJVirtualStackFloat.wrap( Views.interval( img, img ) );
+		final RenderMetrics metrics = new RenderMetrics();
+		final List< Integer > rendered = new ArrayList<>();
+		metrics.addListener( ( index, nanos, allocatedBytes ) -> rendered.add( index ) );
+		stack.setPlaneCacheSize( 1 << 20 );
+		stack.setRenderMetrics( metrics );
+		stack.getPixels( 1 );
+		stack.getPixels( 1 );
+		stack.getPixels( 2 );
+		assertEquals( 2, metrics.getPlanesRendered() );
+		assertEquals( 1, metrics.getPlanesServed() );
+		assertEquals( 2, sum( metrics.getRenderLatencyHistogram() ) );
+		assertEquals( 0, rendered.get( 0 ).intValue() );
+		assertEquals( 1, rendered.get( 1 ).intValue() );
+		metrics.reset();
+		assertEquals( 0, metrics.getPlanesRendered() );
+		assertArrayEquals( new long[ RenderMetrics.HISTOGRAM_BUCKETS ], metrics.getRenderLatencyHistogram() );
+	}
+
+	@Test
+	public void testRegister() throws JMException
+	{
+		final Img< DoubleType > img = ArrayImgs.doubles( new double[] { 1, 2 }, 2, 1 );
+		final ImageJVirtualStackFloat stack = ImageJVirtualStackFloat.wrap( Views.interval( img, img ) );
+		final RenderMetrics metrics = new RenderMetrics();
+		stack.setRenderMetrics( metrics );
+		final ObjectName name = metrics.register( "test" );
+		try
+		{
+			stack.getPixels( 1 );
+			assertEquals( 1L, ManagementFactory.getPlatformMBeanServer().getAttribute( name, "PlanesRendered" ) );
+		}
+		finally
+		{
+			RenderMetrics.unregister( name );
+		}
+	}
+
+	private static long sum( final long[] values )
+	{
+		long sum = 0;
+		for ( final long value : values )
+			sum += value;
+		return sum;
+	}
+}
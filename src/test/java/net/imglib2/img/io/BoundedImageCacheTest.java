@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class BoundedImageCacheTest
+{
+	final AtomicInteger loads = new AtomicInteger();
+
+	// Each image has 100 pixels of 2 bytes.
+	final CacheLoader< String, Img< UnsignedShortType > > loader = path -> {
+		loads.incrementAndGet();
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( 10, 10 );
+		img.firstElement().set( Integer.parseInt( path ) );
+		return img;
+	};
+
+	@Test
+	public void testEvictLeastRecentlyUsed()
+	{
+		final BoundedImageCache cache = new BoundedImageCache( 400 );
+		final Img< UnsignedShortType > a = cache.get( "1", loader );
+		cache.get( "2", loader );
+		assertSame( a, cache.get( "1", loader ) );
+		cache.get( "3", loader );
+		assertEquals( 3, loads.get() );
+		assertEquals( 2, cache.getNumImages() );
+		assertEquals( 400, cache.getOccupiedBytes() );
+		assertNotNull( cache.getIfPresent( "1", loader ) );
+		assertNull( cache.getIfPresent( "2", loader ) );
+		assertEquals( 0, cache.getNumOverflowImages() );
+	}
+
+	@Test
+	public void testSoftOverflow()
+	{
+		final BoundedImageCache cache = new BoundedImageCache( 200, true );
+		final Img< UnsignedShortType > a = cache.get( "1", loader );
+		cache.get( "2", loader );
+		assertEquals( 1, cache.getNumImages() );
+		assertEquals( 1, cache.getNumOverflowImages() );
+		// NB: a is strongly referenced here, it can't be cleared.
+		assertSame( a, cache.get( "1", loader ) );
+		assertEquals( 2, loads.get() );
+	}
+
+	@Test
+	public void testLazyStack()
+	{
+		final BoundedImageCache cache = new BoundedImageCache( 400 );
+		final List< String > paths = Arrays.asList( "0", "1", "2", "3" );
+		final CachedCellImg< UnsignedShortType, ? > ccimg = Load.lazyStack( paths, loader, LazyStackOptions.options().imageCache( cache ) );
+		final RandomAccess< UnsignedShortType > ra = ccimg.randomAccess();
+		for ( int t = 0; t < paths.size(); t++ )
+		{
+			ra.setPosition( t, 2 );
+			assertEquals( t, ra.get().get() );
+		}
+		assertEquals( 2, cache.getNumImages() );
+		assertNotNull( cache.getIfPresent( "3", loader ) );
+	}
+
+	@Test
+	public void testLoadersDontShareImages()
+	{
+		final BoundedImageCache cache = new BoundedImageCache( 1000 );
+		final CacheLoader< String, Img< UnsignedShortType > > other = path -> {
+			final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( 10, 10 );
+			img.firstElement().set( 2 * Integer.parseInt( path ) );
+			return img;
+		};
+		assertEquals( 3, cache.get( "3", loader ).firstElement().get() );
+		assertEquals( 6, cache.get( "3", other ).firstElement().get() );
+		assertEquals( 3, cache.get( "3", loader ).firstElement().get() );
+		assertEquals( 1, loads.get() );
+		assertEquals( 2, cache.getNumImages() );
+	}
+
+	@Test
+	public void testLazyStackWithCellCache()
+	{
+		final BoundedImageCache cache = new BoundedImageCache( 400 );
+		final List< String > paths = Arrays.asList( "0", "1", "2", "3" );
+		final LazyStackOptions options = LazyStackOptions.options().imageCache( cache ).cellCacheBytes( 400 );
+		final CachedCellImg< UnsignedShortType, ? > ccimg = Load.lazyStack( paths, loader, options );
+		final RandomAccess< UnsignedShortType > ra = ccimg.randomAccess();
+		for ( int t = 0; t < paths.size(); t++ )
+		{
+			ra.setPosition( t, 2 );
+			assertEquals( t, ra.get().get() );
+		}
+		assertEquals( 400, cache.getOccupiedBytes() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testNegativeCellCacheBytes()
+	{
+		LazyStackOptions.options().cellCacheBytes( -1 );
+	}
+
+	@Test
+	public void testErrorReleasesWaitingThreads() throws Exception
+	{
+		final BoundedImageCache cache = new BoundedImageCache( 400 );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final CacheLoader< String, Img< UnsignedShortType > > failing = path -> {
+			started.countDown();
+			release.await();
+			throw new NoClassDefFoundError( "broken" );
+		};
+
+		final ExecutorService exe = Executors.newFixedThreadPool( 2 );
+		try
+		{
+			final Future< ? > first = exe.submit( () -> cache.get( "1", failing ) );
+			assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+			final Future< ? > second = exe.submit( () -> cache.get( "1", failing ) );
+			Thread.sleep( 100 );
+			release.countDown();
+			for ( final Future< ? > future : Arrays.asList( first, second ) )
+			{
+				try
+				{
+					future.get( 10, TimeUnit.SECONDS );
+					fail( "Expected the error of the loader" );
+				}
+				catch ( final ExecutionException e )
+				{
+					assertTrue( e.getCause() instanceof NoClassDefFoundError );
+				}
+			}
+		}
+		finally
+		{
+			exe.shutdownNow();
+		}
+
+		// Later calls load again
+		assertEquals( 1, cache.get( "1", loader ).firstElement().get() );
+	}
+}
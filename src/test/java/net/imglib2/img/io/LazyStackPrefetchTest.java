@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+public class LazyStackPrefetchTest
+{
+	final List< String > paths = IntStream.range( 0, 10 ).mapToObj( Integer::toString ).collect( Collectors.toList() );
+
+	@Test
+	public void testPrefetch() throws InterruptedException
+	{
+		final Set< String > loaded = ConcurrentHashMap.newKeySet();
+		final CountDownLatch prefetched = new CountDownLatch( 3 );
+		final CachedCellImg< UnsignedByteType, ? > ccimg = Load.lazyStack( paths, path -> {
+			if ( loaded.add( path ) && !path.equals( "0" ) )
+				prefetched.countDown();
+			return ArrayImgs.unsignedBytes( new byte[] { ( byte ) Integer.parseInt( path ) }, 1, 1 );
+		}, LazyStackOptions.options().prefetch( 3 ) );
+
+		final RandomAccess< UnsignedByteType > ra = ccimg.randomAccess();
+		ra.setPosition( 0, 2 );
+		assertEquals( 0, ra.get().get() );
+
+		assertTrue( prefetched.await( 10, TimeUnit.SECONDS ) );
+		assertTrue( loaded.contains( "3" ) );
+		assertFalse( loaded.contains( "4" ) );
+
+		ra.setPosition( 3, 2 );
+		assertEquals( 3, ra.get().get() );
+	}
+
+	@Test
+	public void testNoPrefetchByDefault()
+	{
+		final Set< String > loaded = ConcurrentHashMap.newKeySet();
+		final CachedCellImg< UnsignedByteType, ? > ccimg = Load.lazyStack( paths, path -> {
+			loaded.add( path );
+			return ArrayImgs.unsignedBytes( 1, 1 );
+		} );
+
+		final RandomAccess< UnsignedByteType > ra = ccimg.randomAccess();
+		ra.setPosition( 0, 2 );
+		ra.get().get();
+		assertEquals( 1, loaded.size() );
+	}
+}
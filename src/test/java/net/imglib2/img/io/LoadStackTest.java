@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+public class LoadStackTest
+{
+	final List< String > paths = IntStream.range( 0, 20 ).mapToObj( Integer::toString ).collect( Collectors.toList() );
+
+	@Test
+	public void testParallelStackKeepsOrder()
+	{
+		final Set< Integer > done = ConcurrentHashMap.newKeySet();
+		final RandomAccessibleInterval< UnsignedByteType > stack = Load.stack( paths, path -> {
+			return ArrayImgs.unsignedBytes( new byte[] { ( byte ) Integer.parseInt( path ) }, 1, 1 );
+		}, 4, ( numDone, numTotal ) -> {
+			assertEquals( paths.size(), numTotal );
+			done.add( numDone );
+		} );
+
+		assertEquals( paths.size(), stack.dimension( 2 ) );
+		final RandomAccess< UnsignedByteType > ra = stack.randomAccess();
+		for ( int i = 0; i < paths.size(); ++i )
+		{
+			ra.setPosition( i, 2 );
+			assertEquals( i, ra.get().get() );
+		}
+		assertEquals( paths.size(), done.size() );
+		assertTrue( done.contains( paths.size() ) );
+	}
+
+	@Test
+	public void testFailuresAreAggregated()
+	{
+		final Set< String > attempted = ConcurrentHashMap.newKeySet();
+		try
+		{
+			Load.stack( paths, path -> {
+				attempted.add( path );
+				if ( path.equals( "3" ) || path.equals( "17" ) )
+					throw new IOException( "broken " + path );
+				return ArrayImgs.unsignedBytes( 1, 1 );
+			}, 4, null );
+			fail( "Expected a LoadException" );
+		}
+		catch ( final LoadException e )
+		{
+			assertEquals( paths.size(), attempted.size() );
+			assertEquals( Arrays.asList( 3, 17 ), Arrays.asList( e.getFailures().keySet().toArray() ) );
+			assertEquals( "broken 17", e.getFailures().get( 17 ).getMessage() );
+			assertEquals( 2, e.getSuppressed().length );
+		}
+	}
+
+	@Test( expected = LoadException.class )
+	public void testSequentialLoaderReturningNull()
+	{
+		Load.< UnsignedByteType >stack( paths, path -> path.equals( "5" ) ? null : ArrayImgs.unsignedBytes( 1, 1 ) );
+	}
+
+	@Test
+	public void testFailuresOfDuplicatePaths()
+	{
+		try
+		{
+			Load.< UnsignedByteType >stack( Arrays.asList( "a", "b", "a" ), path -> {
+				if ( path.equals( "a" ) )
+					throw new IOException( "broken" );
+				return ArrayImgs.unsignedBytes( 1, 1 );
+			}, 2, null );
+			fail( "Expected a LoadException" );
+		}
+		catch ( final LoadException e )
+		{
+			assertEquals( Arrays.asList( 0, 2 ), Arrays.asList( e.getFailures().keySet().toArray() ) );
+			assertEquals( 2, e.getSuppressed().length );
+		}
+	}
+
+	@Test( expected = NoClassDefFoundError.class )
+	public void testErrorsAreRethrown()
+	{
+		Load.< UnsignedByteType >stack( paths, path -> {
+			throw new NoClassDefFoundError( "broken" );
+		}, 4, null );
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.io.FileInfo;
+import ij.io.FileSaver;
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.io.proxyaccess.ShortBufferAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Intervals;
+
+public class MappedLoaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testTiff() throws Exception
+	{
+		for ( final String type : new String[] { "8-bit", "16-bit", "32-bit" } )
+		{
+			final ImagePlus imp = IJ.createImage( "test", type + " ramp", 7, 5, 2, 3, 1 );
+			final String path = new File( folder.getRoot(), type + ".tif" ).getAbsolutePath();
+			assertTrue( new FileSaver( imp ).saveAsTiffStack( path ) );
+
+			final Img< ? > expected = new IJLoader< UnsignedShortType >().get( path );
+			final Img< ? > actual = new MappedLoader< UnsignedShortType >().get( path );
+			assertTrue( actual instanceof PlanarImg );
+			assertArrayEquals( Intervals.dimensionsAsLongArray( expected ), Intervals.dimensionsAsLongArray( actual ) );
+			assertSamePixels( expected, actual );
+		}
+	}
+
+	@Test
+	public void testRawLittleEndian() throws Exception
+	{
+		final short[] values = { 1, 2, 300, ( short ) 40000, 5, 6 };
+		final ByteBuffer bytes = ByteBuffer.allocate( 8 + 2 * values.length ).order( ByteOrder.LITTLE_ENDIAN );
+		bytes.position( 8 );
+		for ( final short value : values )
+			bytes.putShort( value );
+		final File file = new File( folder.getRoot(), "image.raw" );
+		Files.write( file.toPath(), bytes.array() );
+
+		final FileInfo fi = new FileInfo();
+		fi.fileType = FileInfo.GRAY16_UNSIGNED;
+		fi.width = 3;
+		fi.height = 1;
+		fi.nImages = 2;
+		fi.offset = 8;
+		fi.intelByteOrder = true;
+
+		final Img< UnsignedShortType > img = new MappedLoader< UnsignedShortType >( fi ).get( file.getAbsolutePath() );
+		assertArrayEquals( new long[] { 3, 1, 2 }, Intervals.dimensionsAsLongArray( img ) );
+		assertTrue( ( ( PlanarImg< ?, ? > ) img ).getPlane( 1 ) instanceof ShortBufferAccess );
+		final int[] actual = new int[ values.length ];
+		int i = 0;
+		for ( final UnsignedShortType pixel : img )
+			actual[ i++ ] = pixel.get();
+		assertArrayEquals( new int[] { 1, 2, 300, 40000, 5, 6 }, actual );
+	}
+
+	private static void assertSamePixels( final Img< ? > expected, final Img< ? > actual )
+	{
+		final Cursor< ? > e = expected.cursor();
+		final Cursor< ? > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( ( ( RealType< ? > ) e.next() ).getRealDouble(), ( ( RealType< ? > ) a.next() ).getRealDouble(), 0 );
+	}
+}
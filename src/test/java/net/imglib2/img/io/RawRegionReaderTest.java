@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.io.FileSaver;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+public class RawRegionReaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testTiledLazyStack() throws Exception
+	{
+		final List< String > paths = new ArrayList<>();
+		for ( int i = 0; i < 2; ++i )
+		{
+			final ImagePlus imp = IJ.createImage( "test", "16-bit random", 70, 50, 3 );
+			final String path = new File( folder.getRoot(), i + ".tif" ).getAbsolutePath();
+			assertTrue( new FileSaver( imp ).saveAsTiffStack( path ) );
+			paths.add( path );
+		}
+
+		final AtomicInteger reads = new AtomicInteger();
+		final RawRegionReader reader = new RawRegionReader();
+		final CachedCellImg< UnsignedShortType, ? > tiled = Load.lazyStack( paths, path -> {
+			throw new AssertionError( "The loader is not needed to read tiles." );
+		}, LazyStackOptions.options().tiles( 32, 32, ( path, min, dimensions ) -> {
+			reads.incrementAndGet();
+			return reader.read( path, min, dimensions );
+		} ).headerProbe( reader ) );
+
+		assertArrayEquals( new long[] { 70, 50, 3, 2 }, Intervals.dimensionsAsLongArray( tiled ) );
+		assertEquals( 32, tiled.getCellGrid().cellDimension( 0 ) );
+		assertEquals( 32, tiled.getCellGrid().cellDimension( 1 ) );
+		assertEquals( 1, tiled.getCellGrid().cellDimension( 2 ) );
+
+		// Reading one pixel reads one tile
+		final RandomAccess< UnsignedShortType > ra = tiled.randomAccess();
+		ra.setPosition( new long[] { 65, 40, 2, 1 } );
+		ra.get().get();
+		assertEquals( 1, reads.get() );
+
+		final RandomAccessibleInterval< UnsignedShortType > expected = Load.stack( paths, new IJLoader< UnsignedShortType >() );
+		final Cursor< UnsignedShortType > e = Views.flatIterable( expected ).cursor();
+		final Cursor< UnsignedShortType > a = Views.flatIterable( tiled ).cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testRegionOutsideOfImage() throws Exception
+	{
+		final ImagePlus imp = IJ.createImage( "test", "8-bit ramp", 10, 10, 1 );
+		final String path = new File( folder.getRoot(), "small.tif" ).getAbsolutePath();
+		assertTrue( new FileSaver( imp ).saveAsTiff( path ) );
+		new RawRegionReader().read( path, new long[] { 5, 5 }, new int[] { 6, 5 } );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTilesLargerThanAnArray()
+	{
+		// NB: 20000 x 20000 pixels of 8 bytes don't fit into one array.
+		LazyStackOptions.options().tiles( 20000, 20000, new RawRegionReader() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTilesWithoutReader()
+	{
+		LazyStackOptions.options().tiles( 32, 32, null );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTilesWithPrefetch()
+	{
+		final LazyStackOptions options = LazyStackOptions.options().tiles( 32, 32, new RawRegionReader() ).prefetch( 2 );
+		final CachedCellImg< UnsignedShortType, ? > img = Load.lazyStack( Arrays.asList( "0.tif", "1.tif" ), path -> {
+			throw new AssertionError( "Nothing is loaded with invalid options." );
+		}, options );
+		fail( "Expected an exception, but got " + img );
+	}
+}
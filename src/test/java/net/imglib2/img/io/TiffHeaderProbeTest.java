@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.io.FileSaver;
+import net.imglib2.RandomAccess;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Intervals;
+
+public class TiffHeaderProbeTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String save( final ImagePlus imp, final String name )
+	{
+		final String path = new File( folder.getRoot(), name ).getAbsolutePath();
+		assertTrue( imp.getStackSize() > 1 ? new FileSaver( imp ).saveAsTiffStack( path ) : new FileSaver( imp ).saveAsTiff( path ) );
+		return path;
+	}
+
+	@Test
+	public void testProbeMatchesIJLoader() throws IOException
+	{
+		final String[] types = { "8-bit", "16-bit", "32-bit", "RGB" };
+		for ( final String type : types )
+		{
+			final String path = save( IJ.createImage( "test", type + " black", 5, 4, type.equals( "RGB" ) ? 1 : 2, 3, 2 ), type + ".tif" );
+			final ImageHeader probed = new TiffHeaderProbe().probe( path );
+			final ImageHeader loaded = ImageHeader.of( new IJLoader< UnsignedShortType >().get( path ) );
+			assertArrayEquals( loaded.dimensions(), probed.dimensions() );
+			assertSame( loaded.type().getClass(), probed.type().getClass() );
+			assertEquals( loaded.isPlanar(), probed.isPlanar() );
+		}
+	}
+
+	@Test
+	public void testProbeSinglePlane() throws IOException
+	{
+		final String path = save( IJ.createImage( "test", "16-bit black", 5, 4, 1 ), "plane.tif" );
+		assertArrayEquals( new long[] { 5, 4 }, new TiffHeaderProbe().probe( path ).dimensions() );
+	}
+
+	@Test
+	public void testProbeOtherFormat() throws IOException
+	{
+		assertNull( new TiffHeaderProbe().probe( "image.png" ) );
+	}
+
+	@Test
+	public void testLazyStackWithoutDecoding()
+	{
+		final List< String > paths = Arrays.asList(
+				save( IJ.createImage( "a", "16-bit ramp", 5, 4, 3 ), "a.tif" ),
+				save( IJ.createImage( "b", "16-bit ramp", 5, 4, 3 ), "b.tif" ),
+				save( IJ.createImage( "c", "16-bit ramp", 5, 4, 2 ), "c.tif" ) );
+		final AtomicInteger loads = new AtomicInteger();
+		final CacheLoader< String, Img< UnsignedShortType > > loader = path -> {
+			loads.incrementAndGet();
+			return new IJLoader< UnsignedShortType >().get( path );
+		};
+
+		final CachedCellImg< UnsignedShortType, ? > ccimg = Load.lazyStack( paths, loader, LazyStackOptions.options().headerProbe( new TiffHeaderProbe() ) );
+		assertEquals( 0, loads.get() );
+		assertArrayEquals( new long[] { 5, 4, 3, 3 }, Intervals.dimensionsAsLongArray( ccimg ) );
+
+		final RandomAccess< UnsignedShortType > ra = ccimg.randomAccess();
+		ra.setPosition( new long[] { 4, 0, 2, 1 } );
+		ra.get().get();
+		assertEquals( 1, loads.get() );
+
+		// The third file has a different number of slices
+		ra.setPosition( 2, 3 );
+		try
+		{
+			ra.get().get();
+			fail();
+		}
+		catch ( final RuntimeException e )
+		{
+			// expected
+		}
+	}
+}